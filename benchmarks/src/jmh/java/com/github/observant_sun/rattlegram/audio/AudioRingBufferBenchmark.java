@@ -0,0 +1,44 @@
+package com.github.observant_sun.rattlegram.audio;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The copy every captured read goes through on its way from the line to the decoders.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AudioRingBufferBenchmark {
+
+    private static final int READ_INTERVAL_MILLIS = 20;
+
+    @Param({"8000", "48000"})
+    int sampleRate;
+
+    @Param({"1", "2"})
+    int channelCount;
+
+    private AudioRingBuffer ringBuffer;
+    private byte[] captured;
+    private ByteBuffer audioInputBuffer;
+
+    @Setup
+    public void setUp() {
+        int frameSize = channelCount * Short.BYTES;
+        int length = sampleRate * READ_INTERVAL_MILLIS / 1000 * frameSize;
+        ringBuffer = new AudioRingBuffer(sampleRate * frameSize, frameSize, 20);
+        captured = new byte[length];
+        audioInputBuffer = ByteBuffer.allocateDirect(length).order(ByteOrder.nativeOrder());
+    }
+
+    @Benchmark
+    public int writeRead() {
+        ringBuffer.write(captured, 0, captured.length);
+        audioInputBuffer.clear();
+        return ringBuffer.read(audioInputBuffer);
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.observant_sun.rattlegram.benchmarks;
+
+import com.github.observant_sun.rattlegram.encoding.DecoderSession;
+import com.github.observant_sun.rattlegram.encoding.Encoder;
+import com.github.observant_sun.rattlegram.prefs.SampleRate;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a recording of one frame surrounded by silence to a native decoder in the chunks the live decoder reads, the
+ * same calls every receive pipeline of {@code DecoderImpl} makes without the capture thread in between.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DecoderSessionBenchmark {
+
+    private static final int READ_INTERVAL_MILLIS = 20;
+
+    @Param({"SAMPLE_RATE_8000", "SAMPLE_RATE_48000"})
+    SampleRate sampleRate;
+
+    private DecoderSession session;
+    private byte[] recording;
+    private ByteBuffer audioBuffer;
+    private int chunkSamples;
+
+    @Setup
+    public void setUp() {
+        int rate = sampleRate.getRateValue();
+        byte[] frame;
+        try (Encoder encoder = Encoder.newEncoder(rate, 1)) {
+            encoder.configure(EncoderBenchmark.payload("CQ CQ CQ benchmark"), EncoderBenchmark.callsign("N0CALL"), 1500, 0, false);
+            ByteBuffer frameBuffer = ByteBuffer.allocateDirect(encoder.getFrameByteLength());
+            frame = new byte[encoder.render(0, frameBuffer)];
+            frameBuffer.get(0, frame);
+        }
+        int silence = rate * Short.BYTES;
+        recording = new byte[silence + frame.length + silence];
+        System.arraycopy(frame, 0, recording, silence, frame.length);
+        chunkSamples = rate * READ_INTERVAL_MILLIS / 1000;
+        audioBuffer = ByteBuffer.allocateDirect(chunkSamples * Short.BYTES).order(ByteOrder.nativeOrder());
+        session = DecoderSession.newDecoderSession(rate, 0, chunkSamples);
+    }
+
+    @TearDown
+    public void tearDown() {
+        session.close();
+    }
+
+    @Benchmark
+    public int decode(Blackhole blackhole) {
+        return feed(blackhole, false);
+    }
+
+    @Benchmark
+    public int decodeFrontEnd(Blackhole blackhole) {
+        return feed(blackhole, true);
+    }
+
+    private int feed(Blackhole blackhole, boolean frontEndOnly) {
+        int blockCount = 0;
+        int chunkLength = chunkSamples * Short.BYTES;
+        for (int offset = 0; offset + chunkLength <= recording.length; offset += chunkLength) {
+            audioBuffer.clear();
+            audioBuffer.put(recording, offset, chunkLength);
+            blockCount += frontEndOnly
+                    ? session.decodeFrontEnd(audioBuffer, chunkSamples, blackhole::consume)
+                    : session.decode(audioBuffer, chunkSamples, blackhole::consume);
+        }
+        return blockCount;
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.observant_sun.rattlegram.benchmarks;
+
+import com.github.observant_sun.rattlegram.encoding.Encoder;
+import com.github.observant_sun.rattlegram.prefs.SampleRate;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EncoderBenchmark {
+
+    @Param
+    SampleRate sampleRate;
+
+    private Encoder encoder;
+    private ByteBuffer frameBuffer;
+
+    @Setup
+    public void setUp() {
+        encoder = Encoder.newEncoder(sampleRate.getRateValue(), 1);
+        encoder.configure(payload("CQ CQ CQ benchmark"), callsign("N0CALL"), 1500, 0, false);
+        frameBuffer = ByteBuffer.allocateDirect(encoder.getFrameByteLength());
+    }
+
+    @TearDown
+    public void tearDown() {
+        encoder.close();
+    }
+
+    @Benchmark
+    public int render() {
+        return encoder.render(0, frameBuffer);
+    }
+
+    static byte[] payload(String body) {
+        return Arrays.copyOf(body.getBytes(StandardCharsets.UTF_8), 170);
+    }
+
+    static byte[] callsign(String callsign) {
+        return Arrays.copyOf(callsign.getBytes(StandardCharsets.US_ASCII), callsign.length() + 1);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.observant_sun.rattlegram.benchmarks;
+
+import com.github.observant_sun.rattlegram.entity.Message;
+import com.github.observant_sun.rattlegram.entity.MessageType;
+import com.github.observant_sun.rattlegram.model.IncomingMessagesRepeatValidator;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IncomingMessagesRepeatValidatorBenchmark {
+
+    private static final int CALLSIGN_COUNT = 50;
+
+    @Param({"100", "10000", "100000"})
+    int historySize;
+
+    private ObservableList<Message> history;
+    private IncomingMessagesRepeatValidator validator;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUpHistory() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> messages = new ArrayList<>(historySize);
+        for (int i = 0; i < historySize; i++) {
+            messages.add(message(i, now.minusSeconds(historySize - i)));
+        }
+        history = FXCollections.observableArrayList(messages);
+    }
+
+    // validated messages are remembered, every iteration starts from the same history
+    @Setup(Level.Iteration)
+    public void setUpValidator() {
+        validator = new IncomingMessagesRepeatValidator(history, Duration.ofDays(1));
+    }
+
+    @Benchmark
+    public IncomingMessagesRepeatValidator.ValidationResult validateRepeat() {
+        return validator.validate(message(next++ % historySize, LocalDateTime.now()));
+    }
+
+    @Benchmark
+    public IncomingMessagesRepeatValidator.ValidationResult validateNew() {
+        return validator.validate(message(historySize + next++, LocalDateTime.now()));
+    }
+
+    private static Message message(int index, LocalDateTime timestamp) {
+        return new Message("CALL" + index % CALLSIGN_COUNT, "message " + index, null, timestamp, MessageType.NORMAL_INCOMING, null);
+    }
+}
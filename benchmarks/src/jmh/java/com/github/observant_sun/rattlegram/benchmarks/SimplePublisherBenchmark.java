@@ -0,0 +1,39 @@
+package com.github.observant_sun.rattlegram.benchmarks;
+
+import com.github.observant_sun.rattlegram.util.SimplePublisher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SimplePublisherBenchmark {
+
+    @Param({"1", "16", "256"})
+    int listenerCount;
+
+    private SimplePublisher<Integer> publisher;
+    private final LongAdder received = new LongAdder();
+
+    @Setup
+    public void setUp() {
+        publisher = new SimplePublisher<>();
+        for (int i = 0; i < listenerCount; i++) {
+            publisher.subscribe(value -> received.increment());
+        }
+    }
+
+    @Benchmark
+    public void submit() {
+        publisher.submit(1);
+    }
+
+    // every submit runs its listeners on the common pool, the backlog must not leak into the next iteration
+    @TearDown(Level.Iteration)
+    public void awaitListeners() {
+        ForkJoinPool.commonPool().awaitQuiescence(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.observant_sun.rattlegram.benchmarks;
+
+import com.github.observant_sun.rattlegram.util.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UtilsBenchmark {
+
+    // one symbol at 8 kHz, one read interval at 48 kHz, one second at 48 kHz
+    @Param({"1440", "960", "48000"})
+    int length;
+
+    private short[] samples;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) random.nextInt();
+        }
+    }
+
+    @Benchmark
+    public byte[] shortArrayToNewByteArray() {
+        return Utils.shortArrayToNewByteArray(samples);
+    }
+}
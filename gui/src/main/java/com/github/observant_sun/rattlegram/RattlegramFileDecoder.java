@@ -0,0 +1,137 @@
+package com.github.observant_sun.rattlegram;
+
+import com.github.observant_sun.rattlegram.entity.AudioFileSettings;
+import com.github.observant_sun.rattlegram.entity.BatchDecoderResult;
+import com.github.observant_sun.rattlegram.entity.DecodedMessage;
+import com.github.observant_sun.rattlegram.entity.DecoderEvent;
+import com.github.observant_sun.rattlegram.model.BatchDecoder;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decodes WAV or raw signed 16-bit little-endian PCM recordings without an audio device, as fast as the CPU allows.
+ */
+public class RattlegramFileDecoder {
+
+    private static final String USAGE = """
+            Usage: RattlegramFileDecoder [options] <file>...
+              --raw               treat files as headerless s16le PCM (default for non-.wav files)
+              --rate <hz>         sample rate of raw files: 8000, 16000, 32000, 44100 or 48000 (default 8000)
+              --channels <n>      channel count of raw files, 1 or 2 (default 1)
+              --channel <n>       channel select: 0 mono, 1 left, 2 right, 3 sum, 4 analytic (default 0 for mono, 1 for stereo)
+              --threads <n>       number of decoder threads (default: number of processors)
+              --chunk <seconds>   split longer files into chunks decoded in parallel, 0 disables (default 600)
+            """;
+
+    private boolean raw;
+    private int rawSampleRate = 8000;
+    private int rawChannelCount = 1;
+    private Integer channelSelect;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int chunkSeconds = 600;
+    private final List<File> files = new ArrayList<>();
+
+    public static void main(String[] args) {
+        RattlegramFileDecoder fileDecoder = new RattlegramFileDecoder();
+        try {
+            fileDecoder.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+        try {
+            fileDecoder.run();
+        } catch (IOException | UnsupportedAudioFileException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--raw" -> raw = true;
+                case "--rate" -> rawSampleRate = intArg(args, ++i);
+                case "--channels" -> rawChannelCount = intArg(args, ++i);
+                case "--channel" -> channelSelect = intArg(args, ++i);
+                case "--threads" -> threadCount = intArg(args, ++i);
+                case "--chunk" -> chunkSeconds = intArg(args, ++i);
+                case "-h", "--help" -> throw new IllegalArgumentException("");
+                default -> {
+                    if (args[i].startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                    }
+                    files.add(new File(args[i]));
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No input files");
+        }
+        if (rawChannelCount != 1 && rawChannelCount != 2) {
+            throw new IllegalArgumentException("Unsupported channel count " + rawChannelCount);
+        }
+        if (channelSelect != null && (channelSelect < 0 || channelSelect > 4)) {
+            throw new IllegalArgumentException("Unsupported channel select " + channelSelect);
+        }
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+        if (chunkSeconds < 0) {
+            throw new IllegalArgumentException("Chunk length must not be negative");
+        }
+    }
+
+    private static int intArg(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        try {
+            return Integer.parseInt(args[i]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + args[i]);
+        }
+    }
+
+    private void run() throws IOException, UnsupportedAudioFileException, InterruptedException {
+        AudioFileSettings settings = new AudioFileSettings(raw, rawSampleRate, rawChannelCount, channelSelect);
+        long startNanos = System.nanoTime();
+        BatchDecoderResult result;
+        try (BatchDecoder batchDecoder = new BatchDecoder(threadCount, chunkSeconds, settings)) {
+            result = batchDecoder.decode(files);
+        }
+        double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        for (DecodedMessage message : result.messages()) {
+            printMessage(message);
+        }
+        double audioSeconds = result.audioSeconds();
+        System.out.printf(Locale.ROOT, "%d messages, %.1f s of audio decoded in %.2f s on %d threads: %.1fx real time, %.0f samples/s%n",
+                result.messages().size(), audioSeconds, elapsedSeconds, threadCount,
+                audioSeconds / elapsedSeconds, result.sampleCount() / elapsedSeconds);
+    }
+
+    private static void printMessage(DecodedMessage message) {
+        DecoderEvent event = message.event();
+        String text = switch (event.status()) {
+            case DONE -> event.result() < 0
+                    ? "decoding failed"
+                    : new String(event.payload()).trim() + " (" + event.result() + " bit flips corrected)";
+            case PING -> "ping";
+            case NOPE -> "unsupported mode " + event.operationMode();
+            default -> event.status().toString();
+        };
+        long offset = message.sampleOffset();
+        System.out.printf(Locale.ROOT, "%s\t%s\t%d\t%.3f s\t%s\tmode %d\tCFO %.2f Hz\t%s%n",
+                message.timestamp(), message.source(), offset, (double) offset / message.sampleRate(),
+                event.callsign(), event.operationMode(), event.carrierFrequencyOffset(), text);
+    }
+}
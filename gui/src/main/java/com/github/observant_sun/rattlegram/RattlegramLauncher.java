@@ -1,5 +1,6 @@
 package com.github.observant_sun.rattlegram;
 
+import com.github.observant_sun.rattlegram.controller.MainWindowController;
 import com.github.observant_sun.rattlegram.i18n.I18n;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -15,6 +16,8 @@ import java.util.MissingResourceException;
 
 public class RattlegramLauncher extends Application {
 
+    private MainWindowController mainWindowController;
+
     @Override
     public void start(Stage primaryStage) throws Exception {
         Parent root = getParent();
@@ -29,6 +32,13 @@ public class RattlegramLauncher extends Application {
         primaryStage.setOnCloseRequest(e -> Platform.exit());
     }
 
+    @Override
+    public void stop() {
+        if (mainWindowController != null) {
+            mainWindowController.closeResources();
+        }
+    }
+
     private Parent getParent() throws IOException {
         String mainFXMLPath = "fxml/main.fxml";
         URL mainFXMLResource = getClass().getResource(mainFXMLPath);
@@ -36,7 +46,10 @@ public class RattlegramLauncher extends Application {
             throw new MissingResourceException("Failed to load main.fxml",
                     RattlegramLauncher.class.getName(), mainFXMLPath);
         }
-        return FXMLLoader.load(mainFXMLResource, I18n.get().getResourceBundle());
+        FXMLLoader loader = new FXMLLoader(mainFXMLResource, I18n.get().getResourceBundle());
+        Parent parent = loader.load();
+        mainWindowController = loader.getController();
+        return parent;
     }
 
     public static void main(String[] args) {
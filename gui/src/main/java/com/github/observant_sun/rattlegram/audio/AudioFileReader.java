@@ -0,0 +1,84 @@
+package com.github.observant_sun.rattlegram.audio;
+
+import com.github.observant_sun.rattlegram.entity.AudioFileSettings;
+import com.github.observant_sun.rattlegram.prefs.SampleRate;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+public final class AudioFileReader {
+
+    private AudioFileReader() {}
+
+    /**
+     * Opens a WAV file, converted to 16-bit little-endian PCM if needed, or a headerless s16le file.
+     */
+    public static AudioInputStream open(File file, AudioFileSettings settings) throws IOException, UnsupportedAudioFileException {
+        if (isRaw(file, settings)) {
+            checkSampleRate(file, settings.rawSampleRate());
+            AudioFormat format = new AudioFormat(settings.rawSampleRate(), 16, settings.rawChannelCount(), true, false);
+            InputStream input = new BufferedInputStream(new FileInputStream(file));
+            long frameLength = file.length() / format.getFrameSize();
+            return new AudioInputStream(input, format, frameLength);
+        }
+        AudioInputStream stream = AudioSystem.getAudioInputStream(file);
+        AudioFormat format = stream.getFormat();
+        try {
+            checkSampleRate(file, (int) format.getSampleRate());
+            if (format.getChannels() > 2) {
+                throw new IllegalArgumentException(file + ": unsupported channel count " + format.getChannels());
+            }
+        } catch (IllegalArgumentException e) {
+            stream.close();
+            throw e;
+        }
+        AudioFormat pcmFormat = new AudioFormat(format.getSampleRate(), 16, format.getChannels(), true, false);
+        if (!format.matches(pcmFormat)) {
+            stream = AudioSystem.getAudioInputStream(pcmFormat, stream);
+        }
+        return stream;
+    }
+
+    public static int getChannelSelect(File file, AudioFileSettings settings, int channelCount) {
+        Integer channelSelect = settings.channelSelect();
+        int select = channelSelect != null ? channelSelect : (channelCount == 1 ? 0 : 1);
+        if ((select == 0) != (channelCount == 1)) {
+            throw new IllegalArgumentException(file + ": channel select " + select + " does not fit " + channelCount + " channel(s)");
+        }
+        return select;
+    }
+
+    public static void skipFully(InputStream stream, long byteCount) throws IOException {
+        long skipped = 0;
+        while (skipped < byteCount) {
+            long n = stream.skip(byteCount - skipped);
+            if (n <= 0) {
+                if (stream.read() == -1) {
+                    break;
+                }
+                n = 1;
+            }
+            skipped += n;
+        }
+    }
+
+    private static boolean isRaw(File file, AudioFileSettings settings) {
+        return settings.raw() || !file.getName().toLowerCase(Locale.ROOT).endsWith(".wav");
+    }
+
+    private static void checkSampleRate(File file, int sampleRate) {
+        boolean supported = Arrays.stream(SampleRate.values()).anyMatch(rate -> rate.getRateValue() == sampleRate);
+        if (!supported) {
+            throw new IllegalArgumentException(file + ": unsupported sample rate " + sampleRate);
+        }
+    }
+}
@@ -1,16 +1,24 @@
 package com.github.observant_sun.rattlegram.audio;
 
+import com.github.observant_sun.rattlegram.entity.AudioInputStats;
+
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.Mixer;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public interface AudioInputHandler extends AutoCloseable {
     void start() throws LineUnavailableException;
     void pause();
     void resume();
     int read(byte[] buffer) throws IOException;
+    int read(ByteBuffer buffer) throws IOException;
+    AudioInputStats getStats();
 
-    static AudioInputHandler newAudioInputHandler(int sampleRate, int channelCount, Mixer.Info inputMixerInfo) {
-        return new AudioInputHandlerImpl(sampleRate, channelCount, inputMixerInfo);
+    /**
+     * @param lineBufferMillis size of the line buffer, 0 keeps the default of the line
+     */
+    static AudioInputHandler newAudioInputHandler(int sampleRate, int channelCount, Mixer.Info inputMixerInfo, int lineBufferMillis) {
+        return new AudioInputHandlerImpl(sampleRate, channelCount, inputMixerInfo, lineBufferMillis);
     }
 }
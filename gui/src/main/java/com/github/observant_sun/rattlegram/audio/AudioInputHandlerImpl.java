@@ -1,28 +1,42 @@
 package com.github.observant_sun.rattlegram.audio;
 
+import com.github.observant_sun.rattlegram.entity.AudioInputStats;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.sound.sampled.*;
 import java.io.IOException;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.locks.ReentrantLock;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Drains the line on a dedicated capture thread into a ring buffer, readers only ever wait on the ring.
+ */
 @Slf4j
 class AudioInputHandlerImpl implements AudioInputHandler {
 
+    private static final int CAPTURE_CHUNK_MILLIS = 10;
+    private static final int MIN_RING_MILLIS = 2000;
+    // the line delivers a chunk about every capture period, allowing for the jitter of one more
+    private static final int STALL_MILLIS = 2 * CAPTURE_CHUNK_MILLIS;
+
     private TargetDataLine line;
     private AudioInputStream audioInputStream;
+    private AudioRingBuffer ringBuffer;
+    private Thread captureThread;
 
-    private final ReentrantLock reentrantLock = new ReentrantLock();
+    private volatile boolean paused;
+    private volatile boolean closed;
 
     private final int sampleRate;
     private final int channelCount;
     private final Mixer.Info inputMixerInfo;
+    private final int lineBufferMillis;
 
-    public AudioInputHandlerImpl(int sampleRate, int channelCount, Mixer.Info inputMixerInfo) {
+    public AudioInputHandlerImpl(int sampleRate, int channelCount, Mixer.Info inputMixerInfo, int lineBufferMillis) {
         this.sampleRate = sampleRate;
         this.channelCount = channelCount;
         this.inputMixerInfo = inputMixerInfo;
+        this.lineBufferMillis = lineBufferMillis;
     }
 
     @Override
@@ -32,13 +46,29 @@ class AudioInputHandlerImpl implements AudioInputHandler {
         log.debug("Format: {}", format);
 
         line = getTargetDataLine(format);
-        line.open();
-        log.debug("Opened audio input line");
+        if (lineBufferMillis > 0) {
+            line.open(format, millisToBytes(format, lineBufferMillis));
+        } else {
+            line.open();
+        }
+        log.debug("Opened audio input line, buffer size {}", line.getBufferSize());
         line.start();
         log.debug("Audio input line started");
 
         audioInputStream = getAudioInputStream();
         log.debug("Audio input stream opened");
+
+        int ringMillis = Math.max(MIN_RING_MILLIS, 4 * lineBufferMillis);
+        ringBuffer = new AudioRingBuffer(millisToBytes(format, ringMillis), format.getFrameSize(), STALL_MILLIS);
+        captureThread = new Thread(() -> capture(millisToBytes(format, CAPTURE_CHUNK_MILLIS)), "audio-capture-thread");
+        captureThread.setDaemon(true);
+        captureThread.setPriority(Thread.MAX_PRIORITY);
+        captureThread.start();
+    }
+
+    private static int millisToBytes(AudioFormat format, int millis) {
+        int frames = Math.max(1, (int) (format.getFrameRate() * millis / 1000));
+        return frames * format.getFrameSize();
     }
 
     AudioInputStream getAudioInputStream() {
@@ -50,6 +80,40 @@ class AudioInputHandlerImpl implements AudioInputHandler {
         return AudioSystem.getTargetDataLine(format, inputMixerInfo);
     }
 
+    private void capture(int chunkSize) {
+        byte[] chunk = new byte[chunkSize];
+        boolean overrun = false;
+        try {
+            while (!closed) {
+                if (paused) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                int read = audioInputStream.read(chunk, 0, chunk.length);
+                if (read < 0) {
+                    log.warn("Audio input stream ended");
+                    break;
+                }
+                if (read == 0) {
+                    // AudioInputStream.read(byte[]) does not block if line is stopped
+                    LockSupport.parkNanos(this, 1_000_000);
+                    continue;
+                }
+                boolean dropped = ringBuffer.write(chunk, 0, read) < read;
+                if (dropped && !overrun) {
+                    log.warn("Decoder is not keeping up with audio input, dropping audio");
+                }
+                overrun = dropped;
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                log.error("Audio capture failed", e);
+            }
+        } finally {
+            closed = true;
+        }
+    }
+
     @Override
     public void pause() {
         if (line == null) {
@@ -57,7 +121,8 @@ class AudioInputHandlerImpl implements AudioInputHandler {
         }
         log.debug("Pausing audio input stream");
         line.stop();
-        reentrantLock.lock();
+        paused = true;
+        ringBuffer.setPaused(true);
     }
 
     @Override
@@ -67,21 +132,43 @@ class AudioInputHandlerImpl implements AudioInputHandler {
         }
         log.debug("Resuming audio input stream");
         line.start();
-        reentrantLock.unlock();
+        paused = false;
+        ringBuffer.setPaused(false);
+        LockSupport.unpark(captureThread);
     }
 
     @Override
     public int read(byte[] buffer) throws IOException {
-        if (line == null) {
+        return read(ByteBuffer.wrap(buffer));
+    }
+
+    /**
+     * Blocks until the buffer is full, returns -1 once the capture has stopped and nothing is left to read.
+     */
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        if (ringBuffer == null) {
             return -1;
         }
-        // AudioInputStream.read(byte[]) does not block if line is stopped
-        reentrantLock.lock();
-        int read = audioInputStream.read(buffer);
-        reentrantLock.unlock();
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int count = ringBuffer.read(buffer);
+            read += count;
+            if (count == 0) {
+                if (closed) {
+                    return read > 0 ? read : -1;
+                }
+                ringBuffer.awaitData();
+            }
+        }
         return read;
     }
 
+    @Override
+    public AudioInputStats getStats() {
+        return ringBuffer == null ? null : ringBuffer.getStats();
+    }
+
     AudioFormat getAudioFormat() {
         int sampleSizeInBits = 16; // 2 bytes
         boolean signed = true;
@@ -91,6 +178,10 @@ class AudioInputHandlerImpl implements AudioInputHandler {
 
     @Override
     public void close() {
+        closed = true;
+        if (captureThread != null) {
+            LockSupport.unpark(captureThread);
+        }
         log.debug("Closing audio input line");
         try {
             line.close();
@@ -3,8 +3,24 @@ package com.github.observant_sun.rattlegram.audio;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.Mixer;
 
-public interface AudioOutputHandler {
-    void play(byte[] audioData) throws LineUnavailableException;
+/**
+ * Keeps one output line open and running on silence, transmissions are written into it on demand.
+ */
+public interface AudioOutputHandler extends AutoCloseable {
+    /**
+     * Opens and starts the output line.
+     *
+     * @param bufferSize size of the line buffer in bytes
+     */
+    void open(int bufferSize) throws LineUnavailableException;
+
+    /**
+     * Takes over the line from the silence until the playback is closed, opens the line first if needed.
+     */
+    AudioPlayback startPlayback() throws LineUnavailableException;
+
+    @Override
+    void close();
 
     static AudioOutputHandler newAudioOutputHandler(int sampleRate, int channelCount, boolean artificiallyBlockingPlay, Mixer.Info mixerInfo) {
         return new AudioOutputHandlerImpl(sampleRate, channelCount, artificiallyBlockingPlay, mixerInfo);
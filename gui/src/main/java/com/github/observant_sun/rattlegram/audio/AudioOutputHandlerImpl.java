@@ -1,72 +1,178 @@
 package com.github.observant_sun.rattlegram.audio;
 
-import com.github.observant_sun.rattlegram.entity.AudioMixerInfoWrapper;
+import com.github.observant_sun.rattlegram.jfr.AudioPlaybackEvent;
 import com.google.common.base.Stopwatch;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.sound.sampled.*;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Slf4j
-@RequiredArgsConstructor
 class AudioOutputHandlerImpl implements AudioOutputHandler {
 
+    private static final int SILENCE_CHUNK_MILLIS = 20;
+
     private final int sampleRate;
     private final int channelCount;
     private final boolean useOutputDrainBlockWorkaround;
     private final Mixer.Info outputMixerInfo;
 
+    // fair, so that a playback gets the line between two chunks of silence
+    private final ReentrantLock lineLock = new ReentrantLock(true);
+    private volatile SourceDataLine line;
+    private int bufferSize;
+    private volatile boolean closed;
+
+    AudioOutputHandlerImpl(int sampleRate, int channelCount, boolean useOutputDrainBlockWorkaround, Mixer.Info outputMixerInfo) {
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.useOutputDrainBlockWorkaround = useOutputDrainBlockWorkaround;
+        this.outputMixerInfo = outputMixerInfo;
+    }
+
     @Override
-    public synchronized void play(byte[] buffer) throws LineUnavailableException {
-        Clip clip = AudioSystem.getClip(outputMixerInfo);
+    public void open(int bufferSize) throws LineUnavailableException {
+        lineLock.lock();
         try {
-            AudioFormat format;
-            format = getAudioFormat();
-            clip.open(format, buffer, 0, buffer.length);
-            if (useOutputDrainBlockWorkaround) {
-                startAndDrainBlockingly(clip, buffer.length);
-            } else {
-                startAndDrain(clip);
-            }
+            this.bufferSize = bufferSize;
+            openLine();
         } finally {
-            // asynchronously, otherwise it would block for too long
-            ForkJoinPool.commonPool().execute(clip::close);
+            lineLock.unlock();
         }
     }
 
-    private void startAndDrain(Clip clip) {
-        clip.start();
-        clip.drain();
+    private void openLine() throws LineUnavailableException {
+        if (line != null || closed) {
+            return;
+        }
+        AudioFormat format = getAudioFormat();
+        SourceDataLine newLine = AudioSystem.getSourceDataLine(format, outputMixerInfo);
+        newLine.open(format, bufferSize);
+        newLine.start();
+        log.debug("Opened audio output line, buffer size {}", newLine.getBufferSize());
+        line = newLine;
+        Thread silenceThread = new Thread(() -> writeSilence(newLine), "audio-output-silence-thread");
+        silenceThread.setDaemon(true);
+        silenceThread.start();
     }
 
-    private void startAndDrainBlockingly(Clip clip, int bufferSize) {
-        // clip.getMicrosecondLength() returns incorrect duration
-        long clipDurationMs = bufferSize * 1000L / sampleRate / 2 / channelCount;
-        Stopwatch stopwatch = Stopwatch.createStarted();
-        clip.start();
-        clip.drain();
-        long elapsedMs = stopwatch.elapsed(TimeUnit.MILLISECONDS);
-        long sleepDuration = clipDurationMs - elapsedMs;
-        if (sleepDuration > 0) {
+    // keeps the device running between transmissions, so that a transmission starts without reopening it
+    private void writeSilence(SourceDataLine line) {
+        int frameSize = channelCount * Short.BYTES;
+        byte[] silence = new byte[sampleRate * SILENCE_CHUNK_MILLIS / 1000 * frameSize];
+        while (!closed && line.isOpen()) {
+            lineLock.lock();
             try {
-                log.debug("Sleeping for {} ms", sleepDuration);
-                Thread.sleep(sleepDuration);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+                if (!closed && line.isOpen()) {
+                    line.write(silence, 0, silence.length);
+                }
+            } finally {
+                lineLock.unlock();
             }
         }
+        log.debug("Audio output silence stopped");
+    }
 
-        log.debug("duration: {}", elapsedMs);
+    @Override
+    public AudioPlayback startPlayback() throws LineUnavailableException {
+        AudioPlaybackEvent playbackEvent = new AudioPlaybackEvent();
+        playbackEvent.begin();
+        lineLock.lock();
+        try {
+            openLine();
+            if (line == null) {
+                throw new LineUnavailableException("Audio output is closed");
+            }
+            // whatever silence is still buffered would only delay the transmission
+            line.flush();
+            return new LinePlayback(line, playbackEvent);
+        } catch (LineUnavailableException | RuntimeException e) {
+            lineLock.unlock();
+            throw e;
+        }
+    }
+
+    private class LinePlayback implements AudioPlayback {
+
+        private final SourceDataLine line;
+        private final AudioPlaybackEvent playbackEvent;
+        private final Stopwatch stopwatch = Stopwatch.createUnstarted();
+        private long bytesWritten;
+
+        LinePlayback(SourceDataLine line, AudioPlaybackEvent playbackEvent) {
+            this.line = line;
+            this.playbackEvent = playbackEvent;
+        }
+
+        @Override
+        public void write(byte[] audioData, int offset, int length) {
+            if (!stopwatch.isRunning()) {
+                stopwatch.start();
+            }
+            while (length > 0) {
+                int written = line.write(audioData, offset, length);
+                if (written == 0 && !line.isOpen()) {
+                    throw new IllegalStateException("Audio output line closed");
+                }
+                offset += written;
+                length -= written;
+                bytesWritten += written;
+            }
+        }
+
+        @Override
+        public void drain() {
+            if (!stopwatch.isRunning()) {
+                return;
+            }
+            line.drain();
+            if (useOutputDrainBlockWorkaround) {
+                sleepUntilPlayed();
+            }
+            log.debug("duration: {}", stopwatch.elapsed(TimeUnit.MILLISECONDS));
+        }
+
+        private void sleepUntilPlayed() {
+            // drain() returns too early on some systems
+            long durationMs = bytesWritten * 1000L / sampleRate / 2 / channelCount;
+            long sleepDuration = durationMs - stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            if (sleepDuration > 0) {
+                try {
+                    log.debug("Sleeping for {} ms", sleepDuration);
+                    Thread.sleep(sleepDuration);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            lineLock.unlock();
+            playbackEvent.bytesWritten = bytesWritten;
+            playbackEvent.commit();
+        }
     }
 
     private AudioFormat getAudioFormat() {
-        AudioFormat.Encoding encoding = AudioFormat.Encoding.PCM_SIGNED;
         int sampleSizeInBits = 16;
-        int frameSize = 2 * channelCount;
-        float frameRate = (float) (sampleRate / frameSize);
+        boolean signed = true;
         boolean bigEndian = false;
-        return new AudioFormat(encoding, sampleRate, sampleSizeInBits, channelCount, frameSize, frameRate, bigEndian);
+        return new AudioFormat(sampleRate, sampleSizeInBits, channelCount, signed, bigEndian);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        SourceDataLine line = this.line;
+        if (line == null) {
+            return;
+        }
+        log.debug("Closing audio output line");
+        // stops a write of the silence thread that is waiting for room in the buffer
+        line.flush();
+        line.close();
+        this.line = null;
     }
 }
@@ -0,0 +1,16 @@
+package com.github.observant_sun.rattlegram.audio;
+
+/**
+ * Audio being played while it is still produced. Writes block while the line buffer is full.
+ */
+public interface AudioPlayback extends AutoCloseable {
+    void write(byte[] audioData, int offset, int length);
+
+    /**
+     * Blocks until everything written so far has been played.
+     */
+    void drain();
+
+    @Override
+    void close();
+}
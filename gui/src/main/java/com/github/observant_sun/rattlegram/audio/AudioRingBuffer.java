@@ -0,0 +1,150 @@
+package com.github.observant_sun.rattlegram.audio;
+
+import com.github.observant_sun.rattlegram.entity.AudioInputStats;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free ring of audio frames between exactly one writing and one reading thread. The writer never waits, audio
+ * that does not fit is dropped and counted as an overrun.
+ */
+final class AudioRingBuffer {
+
+    private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final byte[] buffer;
+    private final int mask;
+    private final int frameSize;
+    private final long stallNanos;
+    private final LongSupplier nanoClock;
+
+    // positions only grow, the writer owns writePosition and the reader owns readPosition
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+    private volatile Thread waitingReader;
+    // set while the capture is paused, an empty buffer is expected then
+    private volatile boolean paused;
+    // owned by the reader, since when it has been waiting on the empty buffer
+    private boolean waiting;
+    private long waitStart;
+    private boolean stallCounted;
+
+    // written by the writer only, except for underruns which belong to the reader
+    private volatile int highWaterMark;
+    private volatile long droppedBytes;
+    private volatile long overruns;
+    private volatile long underruns;
+
+    AudioRingBuffer(int minCapacity, int frameSize, long stallMillis) {
+        this(minCapacity, frameSize, stallMillis, System::nanoTime);
+    }
+
+    /**
+     * @param minCapacity rounded up to a power of two, which every frame size in use divides
+     * @param stallMillis how long the reader may wait on the empty buffer before it counts as an underrun
+     */
+    AudioRingBuffer(int minCapacity, int frameSize, long stallMillis, LongSupplier nanoClock) {
+        int capacity = Integer.highestOneBit(Math.max(minCapacity, frameSize) - 1) << 1;
+        this.buffer = new byte[capacity];
+        this.mask = capacity - 1;
+        this.frameSize = frameSize;
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Copies as many whole frames as fit, never blocks.
+     *
+     * @return number of bytes written
+     */
+    int write(byte[] source, int offset, int length) {
+        long write = writePosition.get();
+        int used = (int) (write - readPosition.get());
+        int count = Math.min(buffer.length - used, length);
+        count -= count % frameSize;
+        int start = (int) (write & mask);
+        int first = Math.min(count, buffer.length - start);
+        System.arraycopy(source, offset, buffer, start, first);
+        System.arraycopy(source, offset + first, buffer, 0, count - first);
+        writePosition.lazySet(write + count);
+        if (count < length) {
+            overruns++;
+            droppedBytes += length - count;
+        }
+        if (used + count > highWaterMark) {
+            highWaterMark = used + count;
+        }
+        Thread reader = waitingReader;
+        if (reader != null) {
+            LockSupport.unpark(reader);
+        }
+        return count;
+    }
+
+    /**
+     * Copies as many whole frames as are available and fit into the destination, never blocks.
+     *
+     * @return number of bytes read
+     */
+    int read(ByteBuffer destination) {
+        long read = readPosition.get();
+        int available = (int) (writePosition.get() - read);
+        int count = Math.min(available, destination.remaining());
+        count -= count % frameSize;
+        int start = (int) (read & mask);
+        int first = Math.min(count, buffer.length - start);
+        destination.put(buffer, start, first);
+        destination.put(buffer, 0, count - first);
+        readPosition.lazySet(read + count);
+        if (count > 0) {
+            waiting = false;
+        }
+        return count;
+    }
+
+    /**
+     * Parks the reading thread until the writer adds data or a short timeout passes. Waiting is the normal state of a
+     * reader that keeps up, only a wait longer than the stall time while the capture runs counts as an underrun, once
+     * per stall.
+     */
+    void awaitData() {
+        waitingReader = Thread.currentThread();
+        if (writePosition.get() == readPosition.get()) {
+            countStall();
+            LockSupport.parkNanos(this, WAIT_NANOS);
+        }
+        waitingReader = null;
+    }
+
+    private void countStall() {
+        if (paused) {
+            waiting = false;
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        if (!waiting) {
+            waiting = true;
+            waitStart = now;
+            stallCounted = false;
+        } else if (!stallCounted && now - waitStart > stallNanos) {
+            underruns++;
+            stallCounted = true;
+        }
+    }
+
+    void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    AudioInputStats getStats() {
+        return new AudioInputStats(buffer.length, highWaterMark, writePosition.get(), droppedBytes, overruns, underruns);
+    }
+}
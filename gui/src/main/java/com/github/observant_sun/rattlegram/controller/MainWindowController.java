@@ -2,35 +2,38 @@ package com.github.observant_sun.rattlegram.controller;
 
 import com.github.observant_sun.rattlegram.entity.*;
 import com.github.observant_sun.rattlegram.i18n.I18n;
+import com.github.observant_sun.rattlegram.jfr.MessageAppendedEvent;
+import com.github.observant_sun.rattlegram.jfr.StatusUpdateEvent;
 import com.github.observant_sun.rattlegram.model.DecoderInteractor;
 import com.github.observant_sun.rattlegram.model.EncoderInteractor;
+import com.github.observant_sun.rattlegram.model.MessageJournalInteractor;
 import com.github.observant_sun.rattlegram.model.Model;
 import com.github.observant_sun.rattlegram.prefs.*;
 import com.github.observant_sun.rattlegram.util.Utils;
 import javafx.application.Platform;
-import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.input.KeyCode;
-import javafx.scene.input.KeyEvent;
+import javafx.scene.input.*;
 import javafx.scene.layout.*;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.FormatStyle;
 import java.util.*;
 
 @Slf4j
 public class MainWindowController implements Initializable {
 
     private static final int MAX_MESSAGE_BYTE_LENGTH = 170;
+    private static final KeyCombination COPY_KEY_COMBINATION = new KeyCodeCombination(KeyCode.C, KeyCombination.SHORTCUT_DOWN);
 
     private static final TextFormatter<Object> callsignBoxTextFormatter = new TextFormatter<>(change -> {
         String text = change.getText();
@@ -111,7 +114,7 @@ public class MainWindowController implements Initializable {
     @FXML
     private VBox vBox;
     @FXML
-    private TextArea messagesTextArea;
+    private ListView<Message> messagesListView;
     @FXML
     private TextField callsignBox;
     @FXML
@@ -124,6 +127,7 @@ public class MainWindowController implements Initializable {
     private Model model;
     private DecoderInteractor decoderInteractor;
     private EncoderInteractor encoderInteractor;
+    private MessageJournalInteractor messageJournalInteractor;
 
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
@@ -163,11 +167,14 @@ public class MainWindowController implements Initializable {
         model.repeaterModeEnabledProperty().addListener((observable, oldValue, newValue) -> {
             setRepeaterSettingsButtonStyle(newValue);
         });
-        // TODO switch to on-change approach
-        model.getMessages().addListener((InvalidationListener) observable -> {
-            messagesTextArea.clear();
-            model.getMessages().forEach(this::processNewMessage);
-        });
+        messagesListView.setCellFactory(listView -> new MessageListCell());
+        messagesListView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        messagesListView.setItems(model.getMessages());
+        // replayed messages were already appended once, they do not count as new
+        messageJournalInteractor = new MessageJournalInteractor(model);
+        messageJournalInteractor.init();
+        messagesListView.scrollTo(model.getMessages().size() - 1);
+        model.getMessages().addListener(this::processMessagesChange);
         model.getStatusUpdatePublisher().subscribe(this::processStatusUpdate);
         model.getTransmissionBeginPublisher().subscribe(this::processTransmissionBegin);
         model.getListeningBeginPublisher().subscribe(this::processListeningBegin);
@@ -194,35 +201,54 @@ public class MainWindowController implements Initializable {
         showSpectrogramAnalyzerButton.setText(buttonText);
     }
 
-    private void processNewMessage(Message message) {
-        Platform.runLater(() -> {
-            String messageFormattedLine = null;
-            switch (message.type()) {
-                case NORMAL_INCOMING -> {
-                    messageFormattedLine = getMessageFormattedLine(message.timestamp(), message.callsign(), message.body(), ">>");
-                }
-                case ERROR_INCOMING -> {
-                    messageFormattedLine = getMessageFormattedLine(message.timestamp(), message.callsign(), message.decoderResult(), "!>");
-                }
-                case PING_INCOMING -> {
-                    messageFormattedLine = getMessageFormattedLine(message.timestamp(), message.callsign(), "<Received ping>", "P>");
-                }
-                case NORMAL_OUTGOING -> {
-                    messageFormattedLine = getMessageFormattedLine(message.timestamp(), message.callsign(), message.body(), "<<");
-                }
-                case PING_OUTGOING -> {
-                    messageFormattedLine = getMessageFormattedLine(message.timestamp(), message.callsign(), "<Sent ping>", "P<");
-                }
-            }
-            if (messageFormattedLine != null) {
-                messagesTextArea.appendText(messageFormattedLine);
+    // the messages are only changed on the FX thread
+    private void processMessagesChange(ListChangeListener.Change<? extends Message> change) {
+        // only follows new messages if the user has not scrolled up to read or select older ones
+        boolean showingLatest = isShowingLatestMessage();
+        boolean added = false;
+        while (change.next()) {
+            if (change.wasAdded()) {
+                change.getAddedSubList().forEach(this::commitMessageAppendedEvent);
+                added = true;
             }
-        });
+        }
+        if (added && showingLatest) {
+            messagesListView.scrollTo(model.getMessages().size() - 1);
+        }
+    }
+
+    // as of the last layout, which does not know about the change being processed yet
+    private boolean isShowingLatestMessage() {
+        if (!(messagesListView.lookup(".virtual-flow") instanceof VirtualFlow<?> flow)) {
+            return true;
+        }
+        // scrolls requested for earlier changes that have not been laid out yet
+        flow.layout();
+        IndexedCell<?> lastVisibleCell = flow.getLastVisibleCell();
+        return lastVisibleCell == null || lastVisibleCell.getIndex() >= flow.getCellCount() - 1;
+    }
+
+    private void commitMessageAppendedEvent(Message message) {
+        MessageAppendedEvent messageAppendedEvent = new MessageAppendedEvent();
+        if (messageAppendedEvent.shouldCommit()) {
+            messageAppendedEvent.callsign = message.callsign();
+            messageAppendedEvent.type = message.type().name();
+            messageAppendedEvent.source = message.source();
+            messageAppendedEvent.age = Duration.between(message.timestamp(), LocalDateTime.now()).toMillis();
+            messageAppendedEvent.commit();
+        }
     }
 
     private void processStatusUpdate(StatusUpdate status) {
-        Platform.runLater(() ->
-                statusLabel.setText(status.message()));
+        Platform.runLater(() -> {
+            statusLabel.setText(status.message());
+            StatusUpdateEvent statusUpdateEvent = new StatusUpdateEvent();
+            if (statusUpdateEvent.shouldCommit()) {
+                statusUpdateEvent.type = status.type().name();
+                statusUpdateEvent.message = status.message();
+                statusUpdateEvent.commit();
+            }
+        });
     }
 
     private void processTransmissionBegin() {
@@ -248,12 +274,24 @@ public class MainWindowController implements Initializable {
         String message = messageBox.getText();
 
         messageBox.clear();
-        model.getNewOutgoingMessagePublisher().submit(new OutgoingMessage(callsign, message, null));
+        model.getNewOutgoingMessagePublisher().submit(new OutgoingMessage(callsign, message, null, false));
     }
 
-
-    private static String getMessageFormattedLine(LocalDateTime localDateTime, String callsign, String message, String directionString) {
-        return "[%s] %s %s: %s\n".formatted(localDateTime.format(DateTimeFormatter.ofLocalizedTime(FormatStyle.MEDIUM).withLocale(Locale.getDefault())), directionString, callsign, message);
+    public void copySelectedMessages(KeyEvent keyEvent) {
+        if (!COPY_KEY_COMBINATION.match(keyEvent)) {
+            return;
+        }
+        List<Message> selectedMessages = messagesListView.getSelectionModel().getSelectedItems();
+        if (selectedMessages.isEmpty()) {
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (Message message : selectedMessages) {
+            text.append(MessageListCell.format(message)).append('\n');
+        }
+        ClipboardContent content = new ClipboardContent();
+        content.putString(text.toString());
+        Clipboard.getSystemClipboard().setContent(content);
     }
 
     public void showSettingsWindow() {
@@ -285,13 +323,14 @@ public class MainWindowController implements Initializable {
         decoderInteractor.init();
     }
 
-    private void closeResources() {
+    public void closeResources() {
         encoderInteractor.closeResources();
         decoderInteractor.closeResources();
     }
 
+    // the encoder keeps its output line open across settings changes that do not affect it
     public void reinitializeEncoders() {
-        closeResources();
+        decoderInteractor.closeResources();
         initEncoders();
     }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.github.observant_sun.rattlegram.controller;
+
+import com.github.observant_sun.rattlegram.entity.Message;
+import javafx.scene.control.ListCell;
+
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.Locale;
+
+/**
+ * A row of the message log, only the visible rows are formatted.
+ */
+class MessageListCell extends ListCell<Message> {
+
+    private static final DateTimeFormatter TIME_FORMATTER =
+            DateTimeFormatter.ofLocalizedTime(FormatStyle.MEDIUM).withLocale(Locale.getDefault());
+
+    @Override
+    protected void updateItem(Message message, boolean empty) {
+        super.updateItem(message, empty);
+        setText(empty || message == null ? null : format(message));
+    }
+
+    static String format(Message message) {
+        String text = switch (message.type()) {
+            case NORMAL_INCOMING, NORMAL_OUTGOING -> message.body();
+            case ERROR_INCOMING -> message.decoderResult();
+            case PING_INCOMING -> "<Received ping>";
+            case PING_OUTGOING -> "<Sent ping>";
+        };
+        String directionString = switch (message.type()) {
+            case NORMAL_INCOMING -> ">>";
+            case ERROR_INCOMING -> "!>";
+            case PING_INCOMING -> "P>";
+            case NORMAL_OUTGOING -> "<<";
+            case PING_OUTGOING -> "P<";
+        };
+        String time = message.timestamp().format(TIME_FORMATTER);
+        String direction = message.source() == null ? directionString : "%s (%s)".formatted(directionString, message.source());
+        return "[%s] %s %s: %s".formatted(time, direction, message.callsign(), text);
+    }
+}
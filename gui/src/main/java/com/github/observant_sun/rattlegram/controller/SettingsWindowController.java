@@ -41,6 +41,22 @@ public class SettingsWindowController implements Initializable {
     @FXML private ChoiceBox<AudioMixerInfoWrapper> inputMixerInfoChoiceBox;
     @FXML private Label outputMixerInfoChoiceBoxLabel;
     @FXML private ChoiceBox<AudioMixerInfoWrapper> outputMixerInfoChoiceBox;
+    @FXML private Label decoderReadIntervalSpinnerLabel;
+    @FXML private Spinner<Integer> decoderReadIntervalSpinner;
+    @FXML private Label receiveCarrierFrequenciesTextFieldLabel;
+    @FXML private TextField receiveCarrierFrequenciesTextField;
+    @FXML private Label inputLineBufferSpinnerLabel;
+    @FXML private Spinner<Integer> inputLineBufferSpinner;
+    @FXML private Label transmitQueueCapacitySpinnerLabel;
+    @FXML private Spinner<Integer> transmitQueueCapacitySpinner;
+    @FXML private Label repeaterMaxQueueTimeSpinnerLabel;
+    @FXML private Spinner<Integer> repeaterMaxQueueTimeSpinner;
+    @FXML private Label spectrumFrameRateSpinnerLabel;
+    @FXML private Spinner<Integer> spectrumFrameRateSpinner;
+    @FXML private Label messageLogSizeSpinnerLabel;
+    @FXML private Spinner<Integer> messageLogSizeSpinner;
+    @FXML private Label messageReplaySizeSpinnerLabel;
+    @FXML private Spinner<Integer> messageReplaySizeSpinner;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -81,6 +97,22 @@ public class SettingsWindowController implements Initializable {
         stopListeningWhenTransmittingCheckBox.setSelected(stopListeningWhenTransmitting);
         Boolean blockAudioOutputDrainWorkaround = prefs.get(Pref.BLOCK_OUTPUT_DRAIN_WORKAROUND, Boolean.class);
         blockAudioOutputDrainWorkaroundCheckBox.setSelected(blockAudioOutputDrainWorkaround);
+        Integer decoderReadInterval = prefs.get(Pref.DECODER_READ_INTERVAL, Integer.class);
+        decoderReadIntervalSpinner.getValueFactory().setValue(decoderReadInterval);
+        String receiveCarrierFrequencies = prefs.get(Pref.RECEIVE_CARRIER_FREQUENCIES, String.class);
+        receiveCarrierFrequenciesTextField.setText(receiveCarrierFrequencies);
+        Integer inputLineBuffer = prefs.get(Pref.INPUT_LINE_BUFFER, Integer.class);
+        inputLineBufferSpinner.getValueFactory().setValue(inputLineBuffer);
+        Integer transmitQueueCapacity = prefs.get(Pref.TRANSMIT_QUEUE_CAPACITY, Integer.class);
+        transmitQueueCapacitySpinner.getValueFactory().setValue(transmitQueueCapacity);
+        Integer repeaterMaxQueueTime = prefs.get(Pref.REPEATER_MAX_QUEUE_TIME, Integer.class);
+        repeaterMaxQueueTimeSpinner.getValueFactory().setValue(repeaterMaxQueueTime);
+        Integer spectrumFrameRate = prefs.get(Pref.SPECTRUM_FRAME_RATE, Integer.class);
+        spectrumFrameRateSpinner.getValueFactory().setValue(spectrumFrameRate);
+        Integer messageLogSize = prefs.get(Pref.MESSAGE_LOG_SIZE, Integer.class);
+        messageLogSizeSpinner.getValueFactory().setValue(messageLogSize);
+        Integer messageReplaySize = prefs.get(Pref.MESSAGE_REPLAY_SIZE, Integer.class);
+        messageReplaySizeSpinner.getValueFactory().setValue(messageReplaySize);
 
         String inputMixerStringRepresentation = prefs.get(Pref.INPUT_AUDIO_MIXER_STRING_REPRESENTATION, String.class);
         inputMixerInfoChoiceBox.getItems().stream()
@@ -115,6 +147,22 @@ public class SettingsWindowController implements Initializable {
         prefs.set(Pref.STOP_LISTENING_WHEN_TRANSMITTING, stopListeningWhenTransmitting);
         Boolean blockAudioOutputDrainWorkaround = blockAudioOutputDrainWorkaroundCheckBox.isSelected();
         prefs.set(Pref.BLOCK_OUTPUT_DRAIN_WORKAROUND, blockAudioOutputDrainWorkaround);
+        Integer decoderReadInterval = decoderReadIntervalSpinner.getValue();
+        prefs.set(Pref.DECODER_READ_INTERVAL, decoderReadInterval);
+        String receiveCarrierFrequencies = receiveCarrierFrequenciesTextField.getText().strip();
+        prefs.set(Pref.RECEIVE_CARRIER_FREQUENCIES, receiveCarrierFrequencies);
+        Integer inputLineBuffer = inputLineBufferSpinner.getValue();
+        prefs.set(Pref.INPUT_LINE_BUFFER, inputLineBuffer);
+        Integer transmitQueueCapacity = transmitQueueCapacitySpinner.getValue();
+        prefs.set(Pref.TRANSMIT_QUEUE_CAPACITY, transmitQueueCapacity);
+        Integer repeaterMaxQueueTime = repeaterMaxQueueTimeSpinner.getValue();
+        prefs.set(Pref.REPEATER_MAX_QUEUE_TIME, repeaterMaxQueueTime);
+        Integer spectrumFrameRate = spectrumFrameRateSpinner.getValue();
+        prefs.set(Pref.SPECTRUM_FRAME_RATE, spectrumFrameRate);
+        Integer messageLogSize = messageLogSizeSpinner.getValue();
+        prefs.set(Pref.MESSAGE_LOG_SIZE, messageLogSize);
+        Integer messageReplaySize = messageReplaySizeSpinner.getValue();
+        prefs.set(Pref.MESSAGE_REPLAY_SIZE, messageReplaySize);
         AudioMixerInfoWrapper inputMixerInfoWrapper = inputMixerInfoChoiceBox.getValue();
         model.inputMixerInfoProperty().set(inputMixerInfoWrapper);
         AudioMixerInfoWrapper outputMixerInfoWrapper = outputMixerInfoChoiceBox.getValue();
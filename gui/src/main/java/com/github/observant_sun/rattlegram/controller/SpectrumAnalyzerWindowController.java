@@ -1,8 +1,12 @@
 package com.github.observant_sun.rattlegram.controller;
 
 import com.github.observant_sun.rattlegram.model.Model;
+import com.github.observant_sun.rattlegram.model.SpectrumRenderer;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
@@ -16,8 +20,14 @@ public class SpectrumAnalyzerWindowController implements Initializable {
     public VBox vBox;
     @FXML private ImageView spectrumImageView;
     public ImageView spectrogramImageView;
+    // the rows of the spectrogram ring above its head, shown below the rest
+    @FXML private ImageView spectrogramWrapImageView;
 
     private Model model;
+    private final Runnable showSpectrum = this::showSpectrum;
+    // viewports for every head of the spectrogram ring, created once
+    private Rectangle2D[] spectrogramViewports;
+    private Rectangle2D[] spectrogramWrapViewports;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
@@ -25,10 +35,37 @@ public class SpectrumAnalyzerWindowController implements Initializable {
         vBox.setBackground(new Background(new BackgroundFill(blackColor, null, null)));
         spectrumImageView.setPreserveRatio(false);
         model = Model.get();
-        model.getUpdateSpectrogramPublisher().subscribe(spectrumImages -> {
-            spectrumImageView.setImage(spectrumImages.spectrum());
-            spectrogramImageView.setImage(spectrumImages.spectrogram());
-        });
+        model.getUpdateSpectrogramPublisher().subscribe(() -> Platform.runLater(showSpectrum));
+    }
+
+    private void showSpectrum() {
+        SpectrumRenderer spectrumRenderer = model.getSpectrumRenderer();
+        spectrumRenderer.show();
+        spectrumImageView.setImage(spectrumRenderer.getSpectrumImage());
+        Image spectrogramImage = spectrumRenderer.getSpectrogramImage();
+        if (spectrogramImage == null) {
+            return;
+        }
+        int head = spectrumRenderer.getSpectrogramHead();
+        if (spectrogramViewports == null || spectrogramViewports.length != (int) spectrogramImage.getHeight()) {
+            createSpectrogramViewports((int) spectrogramImage.getWidth(), (int) spectrogramImage.getHeight());
+        }
+        spectrogramImageView.setImage(spectrogramImage);
+        spectrogramImageView.setViewport(spectrogramViewports[head]);
+        spectrogramWrapImageView.setImage(spectrogramImage);
+        spectrogramWrapImageView.setViewport(spectrogramWrapViewports[head]);
+        // an empty viewport would show the whole image
+        spectrogramWrapImageView.setVisible(head > 0);
+        spectrogramWrapImageView.setManaged(head > 0);
+    }
+
+    private void createSpectrogramViewports(int width, int height) {
+        spectrogramViewports = new Rectangle2D[height];
+        spectrogramWrapViewports = new Rectangle2D[height];
+        for (int head = 0; head < height; head++) {
+            spectrogramViewports[head] = new Rectangle2D(0, head, width, height - head);
+            spectrogramWrapViewports[head] = new Rectangle2D(0, 0, width, Math.max(head, 1));
+        }
     }
 
 }
@@ -2,25 +2,38 @@ package com.github.observant_sun.rattlegram.encoding;
 
 import com.github.observant_sun.rattlegram.audio.AudioInputHandler;
 import com.github.observant_sun.rattlegram.entity.*;
+import com.github.observant_sun.rattlegram.prefs.InputChannel;
 
 import javax.sound.sampled.LineUnavailableException;
+import java.util.List;
 import java.util.function.Consumer;
 
 public interface Decoder extends AutoCloseable {
 
     void pause();
     void resume();
+    /**
+     * Pixels of the latest spectrum, rendered on the spectrum thread right before the spectrum update callback runs.
+     * The same buffers are reused for every frame, they are only to be read from the callback. The spectrogram is a
+     * ring of rows, see {@link DecoderSession#spectrum}.
+     */
     SpectrumDecoderResult spectrumDecoder();
     void start() throws LineUnavailableException;
     void setUpdateSpectrum(boolean updateSpectrum);
+
+    /**
+     * Counters of all native decoders behind this one, summed up.
+     */
+    DecoderProfile getProfile();
     @Override
     void close();
 
-    static Decoder newDecoder(int sampleRate, int recordChannel, int channelCount,
+    static Decoder newDecoder(int sampleRate, List<InputChannel> receiveChannels, List<Integer> receiveCarrierFrequencies,
+                              int channelCount, int readIntervalMillis, int spectrumFrameRate,
                               Consumer<Message> newMessageCallback, Consumer<StatusUpdate> statusUpdateCallback,
                               Runnable spectrumUpdateCallback, AudioInputHandler audioInputHandler) {
-        return new DecoderImpl(sampleRate, recordChannel, channelCount,
-                newMessageCallback, statusUpdateCallback,
+        return new DecoderImpl(sampleRate, receiveChannels, receiveCarrierFrequencies, channelCount, readIntervalMillis,
+                spectrumFrameRate, newMessageCallback, statusUpdateCallback,
                 spectrumUpdateCallback, audioInputHandler);
     }
 }
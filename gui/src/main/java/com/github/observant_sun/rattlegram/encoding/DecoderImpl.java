@@ -2,21 +2,22 @@ package com.github.observant_sun.rattlegram.encoding;
 
 import com.github.observant_sun.rattlegram.audio.AudioInputHandler;
 import com.github.observant_sun.rattlegram.entity.*;
-import com.github.observant_sun.rattlegram.i18n.I18n;
+import com.github.observant_sun.rattlegram.jfr.AudioReadEvent;
+import com.github.observant_sun.rattlegram.prefs.InputChannel;
 import javafx.scene.image.PixelBuffer;
 import javafx.scene.image.PixelFormat;
-import javafx.scene.image.WritablePixelFormat;
-import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.sound.sampled.LineUnavailableException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.IntBuffer;
-import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
@@ -25,22 +26,29 @@ class DecoderImpl implements Decoder {
 
     private static final int spectrumWidth = 360, spectrumHeight = 128;
     private static final int spectrogramWidth = 360, spectrogramHeight = 128;
-
-    static {
-        System.loadLibrary("rattlegram");
-    }
+    // band_half_width in decoder.hh
+    private static final int BAND_HALF_WIDTH = 950;
+    private static final int SPECTRUM_TINT = 255;
 
     private final int sampleRate;
-    private final int recordChannel;
+    private final List<InputChannel> receiveChannels;
+    private final List<Integer> receiveCarrierFrequencies;
     private final int channelCount;
+    private final int readIntervalMillis;
+    private final int spectrumFrameRate;
 
     private final AudioInputHandler audioInputHandler;
 
-    private byte[] audioInputBuffer;
-    private short[] transformedAudioInputBuffer;
+    // direct buffers are allocated once and handed to native code without pinning or copying
+    private ByteBuffer audioInputBuffer;
 
-    private long decoderHandle;
+    // one per received channel and carrier frequency, all fed from the same capture; the first one drives the spectrum
+    // analyzer, with the whole band of its channel even when it is tuned to a carrier
+    private final List<ReceivePipeline> pipelines = new ArrayList<>();
+    private final PayloadDecodeStage payloadDecodeStage = new PayloadDecodeStage();
     private final AtomicBoolean updateSpectrum = new AtomicBoolean(true);
+    // the spectrum is sampled from the latest decoded block at its own pace, never on the decoding threads
+    private ScheduledExecutorService spectrumScheduler;
 
     private int recordCount;
 
@@ -48,22 +56,28 @@ class DecoderImpl implements Decoder {
     private final Consumer<StatusUpdate> statusUpdateCallback;
     private final Runnable spectrumUpdateCallback;
 
-    private final float[] stagedCFO = new float[1];
-    private final int[] stagedMode = new int[1];
-    private final byte[] stagedCall = new byte[10];
-    private final byte[] payload = new byte[170];
-
-    private final int[] spectrumPixels = new int[spectrumWidth * spectrumHeight];
-    private final int[] spectrogramPixels = new int[spectrogramHeight * spectrogramWidth];
+    private final IntBuffer spectrumPixels = allocateDirect(spectrumWidth * spectrumHeight * Integer.BYTES).asIntBuffer();
+    private final IntBuffer spectrogramPixels = allocateDirect(spectrogramHeight * spectrogramWidth * Integer.BYTES).asIntBuffer();
+    private final PixelBuffer<IntBuffer> spectrumPixelBuffer =
+            new PixelBuffer<>(spectrumWidth, spectrumHeight, spectrumPixels, PixelFormat.getIntArgbPreInstance());
+    private final PixelBuffer<IntBuffer> spectrogramPixelBuffer =
+            new PixelBuffer<>(spectrogramWidth, spectrogramHeight, spectrogramPixels, PixelFormat.getIntArgbPreInstance());
+    // only touched on the spectrum thread
+    private int spectrogramHead;
+    private long spectrogramRows;
 
     private final AtomicBoolean closed = new AtomicBoolean(false);
 
-    public DecoderImpl(int sampleRate, int recordChannel, int channelCount,
+    public DecoderImpl(int sampleRate, List<InputChannel> receiveChannels, List<Integer> receiveCarrierFrequencies,
+                       int channelCount, int readIntervalMillis, int spectrumFrameRate,
                        Consumer<Message> newMessageCallback, Consumer<StatusUpdate> statusUpdateCallback,
                        Runnable spectrumUpdateCallback, AudioInputHandler audioInputHandler) {
         this.sampleRate = sampleRate;
-        this.recordChannel = recordChannel;
+        this.receiveChannels = receiveChannels;
+        this.receiveCarrierFrequencies = receiveCarrierFrequencies;
         this.channelCount = channelCount;
+        this.readIntervalMillis = readIntervalMillis;
+        this.spectrumFrameRate = Math.max(1, spectrumFrameRate);
         this.newMessageCallback = newMessageCallback;
         this.statusUpdateCallback = statusUpdateCallback;
         this.spectrumUpdateCallback = spectrumUpdateCallback;
@@ -74,9 +88,20 @@ class DecoderImpl implements Decoder {
     @Override
     public void start() throws LineUnavailableException {
         audioInputHandler.start();
-        Thread decoderThread = new Thread(this::run);
-        decoderThread.setDaemon(true);
-        decoderThread.start();
+        payloadDecodeStage.start("decoder-payload-thread");
+        for (int i = 0; i < pipelines.size(); i++) {
+            pipelines.get(i).start("decoder-thread-" + i);
+        }
+        spectrumScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "decoder-spectrum-thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long spectrumPeriodMicros = 1_000_000L / spectrumFrameRate;
+        spectrumScheduler.scheduleAtFixedRate(this::updateSpectrum, spectrumPeriodMicros, spectrumPeriodMicros, TimeUnit.MICROSECONDS);
+        Thread captureThread = new Thread(this::run, "decoder-capture-thread");
+        captureThread.setDaemon(true);
+        captureThread.start();
     }
 
     @Override
@@ -86,150 +111,109 @@ class DecoderImpl implements Decoder {
 
     @Override
     public SpectrumDecoderResult spectrumDecoder() {
-        final int spectrumTint = 255;
-        spectrumDecoder(this.decoderHandle, spectrumPixels, spectrogramPixels, spectrumTint);
-        IntBuffer spectrumPixelsIntBuffer = IntBuffer.wrap(spectrumPixels);
-        IntBuffer spectrogramPixelsIntBuffer = IntBuffer.wrap(spectrogramPixels);
-        WritablePixelFormat<IntBuffer> pixelFormat = PixelFormat.getIntArgbPreInstance();
-        PixelBuffer<IntBuffer> spectrumPixels = new PixelBuffer<>(spectrumWidth, spectrumHeight, spectrumPixelsIntBuffer, pixelFormat);
-        PixelBuffer<IntBuffer> spectrogramPixels = new PixelBuffer<>(spectrogramWidth, spectrogramHeight, spectrogramPixelsIntBuffer, pixelFormat);
-        return new SpectrumDecoderResult(spectrumPixels, spectrogramPixels);
+        return new SpectrumDecoderResult(spectrumPixelBuffer, spectrogramPixelBuffer, spectrogramHead, spectrogramRows);
     }
 
-    private native boolean feedDecoder(long decoderHandle, short[] audioBuffer, int sampleCount, int channelSelect);
-
-    private native int processDecoder(long decoderHandle);
-
-    private native void spectrumDecoder(long decoderHandle, int[] spectrumPixels, int[] spectrogramPixels, int spectrumTint);
+    @Override
+    public DecoderProfile getProfile() {
+        DecoderProfile profile = payloadDecodeStage.getProfile();
+        for (ReceivePipeline pipeline : pipelines) {
+            profile = profile.plus(pipeline.getProfile());
+        }
+        return profile;
+    }
 
-    private native void stagedDecoder(long decoderHandle, float[] carrierFrequencyOffset, int[] operationMode, byte[] callSign);
+    private void init() {
+        recordCount = Math.max(1, sampleRate * readIntervalMillis / 1000);
+        int frameSize = channelCount * Short.BYTES;
+        // interleaved 16-bit little-endian PCM, exactly as read from the line
+        audioInputBuffer = allocateDirect(frameSize * recordCount);
+        List<Integer> carrierFrequencies = getValidCarrierFrequencies();
+        for (InputChannel receiveChannel : receiveChannels) {
+            for (int carrierFrequency : carrierFrequencies) {
+                DecoderSession decoderSession = DecoderSession.newDecoderSession(sampleRate, receiveChannel.getIntValue(), recordCount, carrierFrequency);
+                pipelines.add(new ReceivePipeline(decoderSession, getSource(receiveChannel, carrierFrequency),
+                        frameSize, audioInputBuffer.capacity(), payloadDecodeStage, newMessageCallback, statusUpdateCallback));
+            }
+        }
+    }
 
-    private native int fetchDecoder(long decoderHandle, byte[] payload);
+    // 0 stands for the whole band
+    private List<Integer> getValidCarrierFrequencies() {
+        if (receiveChannels.contains(InputChannel.ANALYTIC)) {
+            if (!receiveCarrierFrequencies.isEmpty()) {
+                log.warn("Receive carrier frequencies are not supported for analytic input, receiving the whole band");
+            }
+            return List.of(0);
+        }
+        List<Integer> carrierFrequencies = receiveCarrierFrequencies.stream()
+                .filter(carrierFrequency -> {
+                    boolean valid = carrierFrequency - BAND_HALF_WIDTH > 0 && carrierFrequency + BAND_HALF_WIDTH < sampleRate / 2;
+                    if (!valid) {
+                        log.warn("Carrier frequency {} Hz does not fit into sample rate {}, ignoring", carrierFrequency, sampleRate);
+                    }
+                    return valid;
+                })
+                .distinct()
+                .toList();
+        return carrierFrequencies.isEmpty() ? List.of(0) : carrierFrequencies;
+    }
 
-    private native long createNewDecoder(int sampleRate);
+    private String getSource(InputChannel receiveChannel, int carrierFrequency) {
+        List<String> parts = new ArrayList<>();
+        if (receiveChannels.size() > 1) {
+            parts.add(receiveChannel.toString());
+        }
+        if (carrierFrequency > 0) {
+            parts.add(carrierFrequency + " Hz");
+        }
+        return parts.isEmpty() ? null : String.join(", ", parts);
+    }
 
-    private native void destroyDecoder(long decoderHandle);
+    private static ByteBuffer allocateDirect(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
 
-    private void init() {
-        decoderHandle = createNewDecoder(sampleRate);
-        if (decoderHandle == 0) {
-            throw new RuntimeException("Failed to create decoder");
+    // frames without a new block in between are skipped, the waterfall then scrolls at the block rate at most
+    private void updateSpectrum() {
+        if (!updateSpectrum.get()) {
+            return;
+        }
+        try {
+            int head = pipelines.get(0).spectrum(spectrumPixels, spectrogramPixels, SPECTRUM_TINT);
+            if (head >= 0) {
+                spectrogramRows += Math.floorMod(spectrogramHead - head, spectrogramHeight);
+                spectrogramHead = head;
+                spectrumUpdateCallback.run();
+            }
+        } catch (RuntimeException e) {
+            // an exception would cancel all further updates
+            log.error("Error updating spectrum", e);
         }
-        recordCount = sampleRate / 50;
-        int transformedAudioInputBufferLength = channelCount * recordCount;
-        audioInputBuffer = new byte[transformedAudioInputBufferLength * 2];
-        transformedAudioInputBuffer = new short[transformedAudioInputBufferLength];
     }
 
     private void run() {
         while (!closed.get()) {
             int read;
+            AudioReadEvent audioReadEvent = new AudioReadEvent();
+            audioReadEvent.begin();
             try {
+                audioInputBuffer.clear();
                 read = audioInputHandler.read(audioInputBuffer);
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
+            audioReadEvent.bytes = read;
+            audioReadEvent.commit();
             if (read == -1) {
                 log.warn("Got EOF from audio input stream, stopping");
                 break;
             }
-            copyToTransformedBuffer();
-            decodeNextBytes();
-        }
-    }
-
-    @Getter
-    @RequiredArgsConstructor
-    private enum DecoderStatus {
-        OKAY(0),
-        FAIL(1),
-        SYNC(2),
-        DONE(3),
-        HEAP(4),
-        NOPE(5),
-        PING(6),
-        ;
-
-        private final int statusCode;
-
-        private static final Map<Integer, DecoderStatus> codeToStatusMap = new HashMap<>();
-
-        static {
-            for (DecoderStatus status : values()) {
-                codeToStatusMap.put(status.statusCode, status);
+            int length = read - read % (channelCount * Short.BYTES);
+            for (ReceivePipeline pipeline : pipelines) {
+                pipeline.submit(audioInputBuffer, length);
             }
         }
-
-        public static Optional<DecoderStatus> getByCode(int statusCode) {
-            return Optional.ofNullable(codeToStatusMap.get(statusCode));
-        }
-    }
-
-    private void decodeNextBytes() {
-        if (!feedDecoder(decoderHandle, transformedAudioInputBuffer, recordCount, recordChannel))
-            return;
-        int statusCode = processDecoder(decoderHandle);
-        DecoderStatus status = DecoderStatus.getByCode(statusCode)
-                .orElseThrow(() -> new RuntimeException("Unknown decoder status: " + statusCode));
-        if (updateSpectrum.get()) {
-            spectrumUpdateCallback.run();
-        }
-        switch (status) {
-            case OKAY:
-                break;
-            case FAIL:
-                String preambleFailedMsg = I18n.get().getMessage(Decoder.class, "preambleFailed");
-                statusUpdateCallback.accept(new StatusUpdate(StatusType.ERROR, preambleFailedMsg));
-                break;
-            case NOPE:
-                stagedDecoder(decoderHandle, stagedCFO, stagedMode, stagedCall);
-                fromStatus();
-                String modeUnsupportedMsg = I18n.get().getMessage(Decoder.class, "modeUnsupported");
-                newMessageCallback.accept(new Message(getCallsign(), null, modeUnsupportedMsg.formatted(stagedMode[0]), LocalDateTime.now(), MessageType.ERROR_INCOMING));
-                break;
-            case PING:
-                stagedDecoder(decoderHandle, stagedCFO, stagedMode, stagedCall);
-                fromStatus();
-                String gotPingMsg = I18n.get().getMessage(Decoder.class, "gotPing");
-                newMessageCallback.accept(new Message(getCallsign(), null, gotPingMsg, LocalDateTime.now(), MessageType.PING_INCOMING));
-                break;
-            case HEAP:
-                String notEnoughMemoryMsg = I18n.get().getMessage(Decoder.class, "notEnoughMemory");
-                statusUpdateCallback.accept(new StatusUpdate(StatusType.ERROR, notEnoughMemoryMsg));
-                break;
-            case SYNC:
-                stagedDecoder(decoderHandle, stagedCFO, stagedMode, stagedCall);
-                fromStatus();
-                break;
-            case DONE:
-                int result = fetchDecoder(decoderHandle, payload);
-                if (result < 0) {
-                    String decodingFailedMsg = I18n.get().getMessage(Decoder.class, "decodingFailed");
-                    newMessageCallback.accept(new Message(getCallsign(), null, decodingFailedMsg, LocalDateTime.now(), MessageType.ERROR_INCOMING));
-                } else {
-                    String bitFlipsCorrectedMsg = I18n.get().getMessage(Decoder.class, "bitFlipsCorrected");
-                    statusUpdateCallback.accept(new StatusUpdate(StatusType.OK, bitFlipsCorrectedMsg.formatted(result)));
-                    newMessageCallback.accept(new Message(getCallsign(), new String(payload).trim(), null, LocalDateTime.now(), MessageType.NORMAL_INCOMING));
-                }
-                break;
-        }
-    }
-
-    private String getCallsign() {
-        return new String(stagedCall).trim();
-    }
-
-    private void copyToTransformedBuffer() {
-        for (int i = 0; i < transformedAudioInputBuffer.length; i++) {
-            transformedAudioInputBuffer[i] = (short) ((audioInputBuffer[i * 2 + 1] << 8) + audioInputBuffer[i * 2]);
-        }
-    }
-
-    private void fromStatus() {
-        String fromMsg = I18n.get().getMessage(Decoder.class, "from");
-        statusUpdateCallback.accept(
-                new StatusUpdate(StatusType.OK, fromMsg.formatted(new String(stagedCall).trim(), stagedMode[0], stagedCFO[0]))
-        );
     }
 
     @Override
@@ -257,19 +241,24 @@ class DecoderImpl implements Decoder {
             return;
         }
         log.debug("Asking decoder to stop");
+        log.info("Audio input stats: {}", audioInputHandler.getStats());
+        log.info("Decoder profile: {}", getProfile());
+        for (int i = 0; i < pipelines.size(); i++) {
+            long droppedReads = pipelines.get(i).getDroppedReads();
+            if (droppedReads > 0) {
+                log.info("Receive pipeline {} dropped {} reads", i, droppedReads);
+            }
+        }
         try {
             audioInputHandler.close();
         } catch (Exception e) {
             log.error(e.getMessage(), e);
         }
-        log.debug("Closing decoder {}", decoderHandle);
-        try {
-            if (decoderHandle != 0) {
-                destroyDecoder(decoderHandle);
-                decoderHandle = 0;
-            }
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
+        if (spectrumScheduler != null) {
+            spectrumScheduler.shutdownNow();
         }
+        // every pipeline destroys its native decoder on its own thread once it stops
+        pipelines.forEach(ReceivePipeline::close);
+        payloadDecodeStage.close();
     }
 }
@@ -0,0 +1,70 @@
+package com.github.observant_sun.rattlegram.encoding;
+
+import com.github.observant_sun.rattlegram.entity.DecoderEvent;
+import com.github.observant_sun.rattlegram.entity.DecoderProfile;
+import com.github.observant_sun.rattlegram.entity.DecoderStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.function.Consumer;
+
+/**
+ * A single native decoder instance. Not thread-safe, one session per decoding thread.
+ */
+public interface DecoderSession extends AutoCloseable {
+
+    /**
+     * Feeds interleaved 16-bit little-endian PCM from a direct buffer.
+     *
+     * @return number of completed blocks, each of them produces one event
+     */
+    int decode(ByteBuffer audioBuffer, int sampleCount, Consumer<DecoderEvent> eventConsumer);
+
+    /**
+     * Same as {@link #decode}, but leaves out the forward error correction: {@link DecoderStatus#DONE} events carry
+     * the soft bits of the frame instead of its payload, to be finished by a {@link PayloadDecoder}.
+     */
+    int decodeFrontEnd(ByteBuffer audioBuffer, int sampleCount, Consumer<DecoderEvent> eventConsumer);
+
+    /**
+     * Renders the spectrum of the latest decoded block, may be called from any thread while another one is decoding.
+     * Never blocks the decoding thread, a block that arrives while its copy is being taken is left out. The
+     * spectrogram is a ring of rows: every call writes two new rows above the previous head, wrapping around to the
+     * bottom.
+     *
+     * @return the row of the newest line of the spectrogram, or -1 if no block was decoded since the previous call,
+     * the pixels are left as they were then
+     */
+    int spectrum(IntBuffer spectrumPixels, IntBuffer spectrogramPixels, int spectrumTint);
+
+    /**
+     * Counters of the native decoder, safe to call from any thread.
+     */
+    DecoderProfile getProfile();
+
+    int getSampleRate();
+
+    long getSamplesDecoded();
+
+    @Override
+    void close();
+
+    /**
+     * Samples per block, the decoder processes its input in blocks of this length (extended_length in decoder.hh).
+     */
+    static int getBlockLength(int sampleRate) {
+        int symbolLength = 1280 * sampleRate / 8000;
+        return symbolLength + symbolLength / 8;
+    }
+
+    static DecoderSession newDecoderSession(int sampleRate, int channelSelect, int maxSampleCount) {
+        return new DecoderSessionImpl(sampleRate, channelSelect, maxSampleCount, 0);
+    }
+
+    /**
+     * Creates a session that only receives the band around the given carrier frequency.
+     */
+    static DecoderSession newDecoderSession(int sampleRate, int channelSelect, int maxSampleCount, int carrierFrequency) {
+        return new DecoderSessionImpl(sampleRate, channelSelect, maxSampleCount, carrierFrequency);
+    }
+}
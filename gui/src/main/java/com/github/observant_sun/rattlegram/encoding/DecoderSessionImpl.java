@@ -0,0 +1,173 @@
+package com.github.observant_sun.rattlegram.encoding;
+
+import com.github.observant_sun.rattlegram.entity.*;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Slf4j
+class DecoderSessionImpl implements DecoderSession {
+
+    static {
+        NativeLibrary.load();
+    }
+
+    // mirrors struct DecoderEvent in decoder.hh
+    private static final int EVENT_SIZE = 40;
+    private static final int EVENT_STATUS = 0, EVENT_SAMPLE_OFFSET = 4, EVENT_CFO = 8, EVENT_MODE = 12,
+            EVENT_RESULT = 16, EVENT_PAYLOAD_OFFSET = 20, EVENT_CODE_OFFSET = 24, EVENT_CALL = 28;
+    private static final int CALL_LENGTH = 9;
+    static final int PAYLOAD_SIZE = 170;
+    static final int CODE_LENGTH = 2048;
+    // PROFILE_LENGTH in decoder.hh
+    static final int PROFILE_LENGTH = 3 * DecoderStage.values().length + 1;
+
+    @Getter
+    private final int sampleRate;
+    private final int channelSelect;
+    private final int maxSampleCount;
+
+    private long decoderHandle;
+    @Getter
+    private long samplesDecoded;
+
+    private final ByteBuffer events;
+    private final ByteBuffer payloads;
+    private final ByteBuffer codes;
+    private final byte[] callBytes = new byte[CALL_LENGTH];
+
+    DecoderSessionImpl(int sampleRate, int channelSelect, int maxSampleCount, int carrierFrequency) {
+        this.sampleRate = sampleRate;
+        this.channelSelect = channelSelect;
+        this.maxSampleCount = maxSampleCount;
+        decoderHandle = createNewDecoder(sampleRate);
+        if (decoderHandle == 0) {
+            throw new RuntimeException("Failed to create decoder");
+        }
+        if (carrierFrequency > 0) {
+            tuneDecoder(decoderHandle, carrierFrequency);
+        }
+        // a block is longer than 1/8 s at every rate, plus one for a block left over from the previous call
+        int maxEvents = maxSampleCount / (sampleRate / 8) + 2;
+        events = allocateDirect(maxEvents * EVENT_SIZE);
+        payloads = allocateDirect(maxEvents * PAYLOAD_SIZE);
+        codes = allocateDirect(maxEvents * CODE_LENGTH);
+    }
+
+    private native long createNewDecoder(int sampleRate);
+
+    private native void destroyDecoder(long decoderHandle);
+
+    private native void tuneDecoder(long decoderHandle, int carrierFrequency);
+
+    private native int batchDecoder(long decoderHandle, ByteBuffer audioBuffer, int sampleCount, int channelSelect, ByteBuffer events, ByteBuffer payloads, ByteBuffer codes);
+
+    private native int spectrumDecoder(long decoderHandle, IntBuffer spectrumPixels, IntBuffer spectrogramPixels, int spectrumTint);
+
+    private native void profileDecoder(long decoderHandle, long[] profile);
+
+    private static ByteBuffer allocateDirect(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public int decode(ByteBuffer audioBuffer, int sampleCount, Consumer<DecoderEvent> eventConsumer) {
+        return decode(audioBuffer, sampleCount, eventConsumer, null);
+    }
+
+    @Override
+    public int decodeFrontEnd(ByteBuffer audioBuffer, int sampleCount, Consumer<DecoderEvent> eventConsumer) {
+        return decode(audioBuffer, sampleCount, eventConsumer, codes);
+    }
+
+    private int decode(ByteBuffer audioBuffer, int sampleCount, Consumer<DecoderEvent> eventConsumer, ByteBuffer codes) {
+        if (!audioBuffer.isDirect()) {
+            throw new IllegalArgumentException("Audio buffer must be direct");
+        }
+        if (sampleCount < 0 || sampleCount > maxSampleCount) {
+            throw new IllegalArgumentException("Sample count " + sampleCount + " is not within 0 and " + maxSampleCount);
+        }
+        int frameSize = channelSelect == 0 ? Short.BYTES : 2 * Short.BYTES;
+        if (audioBuffer.capacity() < (long) sampleCount * frameSize) {
+            throw new IllegalArgumentException("Audio buffer of " + audioBuffer.capacity() + " bytes is too small for "
+                    + sampleCount + " samples of " + frameSize + " bytes");
+        }
+        int eventCount = batchDecoder(decoderHandle, audioBuffer, sampleCount, channelSelect, events, payloads, codes);
+        if (eventCount < 0) {
+            throw new IllegalStateException("Event buffers are too small for " + sampleCount + " samples");
+        }
+        for (int i = 0; i < eventCount; i++) {
+            eventConsumer.accept(readEvent(i * EVENT_SIZE));
+        }
+        samplesDecoded += sampleCount;
+        return eventCount;
+    }
+
+    private DecoderEvent readEvent(int event) {
+        int statusCode = events.getInt(event + EVENT_STATUS);
+        DecoderStatus status = DecoderStatus.getByCode(statusCode)
+                .orElseThrow(() -> new RuntimeException("Unknown decoder status: " + statusCode));
+        byte[] payload = null;
+        int payloadOffset = events.getInt(event + EVENT_PAYLOAD_OFFSET);
+        if (payloadOffset >= 0) {
+            payload = new byte[PAYLOAD_SIZE];
+            payloads.get(payloadOffset, payload);
+        }
+        byte[] softBits = null;
+        int codeOffset = events.getInt(event + EVENT_CODE_OFFSET);
+        if (codeOffset >= 0) {
+            softBits = new byte[CODE_LENGTH];
+            codes.get(codeOffset, softBits);
+        }
+        events.get(event + EVENT_CALL, callBytes);
+        return new DecoderEvent(
+                status,
+                samplesDecoded + events.getInt(event + EVENT_SAMPLE_OFFSET),
+                events.getFloat(event + EVENT_CFO),
+                events.getInt(event + EVENT_MODE),
+                new String(callBytes).trim(),
+                events.getInt(event + EVENT_RESULT),
+                payload,
+                softBits
+        );
+    }
+
+    @Override
+    public synchronized int spectrum(IntBuffer spectrumPixels, IntBuffer spectrogramPixels, int spectrumTint) {
+        return spectrumDecoder(decoderHandle, spectrumPixels, spectrogramPixels, spectrumTint);
+    }
+
+    @Override
+    public synchronized DecoderProfile getProfile() {
+        if (decoderHandle == 0) {
+            return DecoderProfile.empty();
+        }
+        long[] profile = new long[PROFILE_LENGTH];
+        profileDecoder(decoderHandle, profile);
+        return readProfile(profile);
+    }
+
+    static DecoderProfile readProfile(long[] profile) {
+        List<DecoderStageStats> stages = new ArrayList<>();
+        for (DecoderStage stage : DecoderStage.values()) {
+            int offset = 3 * stage.ordinal();
+            stages.add(new DecoderStageStats(stage, profile[offset], profile[offset + 1], profile[offset + 2]));
+        }
+        return new DecoderProfile(List.copyOf(stages), profile[PROFILE_LENGTH - 1]);
+    }
+
+    @Override
+    public synchronized void close() {
+        log.debug("Closing decoder session {}", decoderHandle);
+        if (decoderHandle != 0) {
+            destroyDecoder(decoderHandle);
+            decoderHandle = 0;
+        }
+    }
+}
@@ -1,9 +1,28 @@
 package com.github.observant_sun.rattlegram.encoding;
 
+import java.nio.ByteBuffer;
+
 public interface Encoder extends AutoCloseable {
 
     void configure(byte[] payload, byte[] callSign, int carrierFrequency, int noiseSymbols, boolean fancyHeader);
-    byte[] produce(int channelSelect);
+
+    /**
+     * Exact size of the configured frame as 16-bit little-endian PCM.
+     */
+    int getFrameByteLength();
+
+    /**
+     * Renders the whole configured frame in one native call.
+     *
+     * @param frameBuffer direct buffer of at least {@link #getFrameByteLength()} bytes
+     * @return number of bytes written
+     */
+    int render(int channelSelect, ByteBuffer frameBuffer);
+
+    int getSymbolByteLength();
+
+    int getSampleRate();
+
     @Override
     void close();
 
@@ -1,22 +1,23 @@
 package com.github.observant_sun.rattlegram.encoding;
 
-import com.github.observant_sun.rattlegram.util.Utils;
+import lombok.Getter;
 import lombok.Synchronized;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
 
 @Slf4j
 class EncoderImpl implements Encoder {
 
-    private static final int REPEAT_COUNT = 50;
-
     static {
-        System.loadLibrary("rattlegram");
+        NativeLibrary.load();
     }
 
-    private final short[] outputBuffer;
+    @Getter
+    private final int sampleRate;
+    private final int frameSize;
+    @Getter
+    private final int symbolByteLength;
 
     private volatile long encoderHandle;
 
@@ -24,17 +25,21 @@ class EncoderImpl implements Encoder {
 
     private native void configureEncoder(long encoderHandle, byte[] payload, byte[] callSign, int carrierFrequency, int noiseSymbols, boolean fancyHeader);
 
-    private native boolean produceEncoder(long encoderHandle, short[] audioBuffer, int channelSelect);
+    private native int frameLengthEncoder(long encoderHandle);
+
+    private native int renderEncoder(long encoderHandle, ByteBuffer frameBuffer, int channelSelect);
 
     private native void destroyEncoder(long encoderHandle);
 
     public EncoderImpl(int sampleRate, int channelCount) {
+        this.sampleRate = sampleRate;
         this.encoderHandle = createNewEncoder(sampleRate);
 
         int symbolLength = (1280 * sampleRate) / 8000;
         int guardLength = symbolLength / 8;
         int extendedLength = symbolLength + guardLength;
-        this.outputBuffer = new short[extendedLength * channelCount];
+        this.frameSize = channelCount * Short.BYTES;
+        this.symbolByteLength = extendedLength * frameSize;
     }
 
     @Synchronized
@@ -45,29 +50,19 @@ class EncoderImpl implements Encoder {
 
     @Synchronized
     @Override
-    public byte[] produce(int channelSelect) {
-        if (encoderHandle == 0) return null;
-        log.debug("produce(channelSelect={}), encoderHandle={}", channelSelect, encoderHandle);
-        List<byte[]> list = new ArrayList<>();
-        for (int i = 0; i < REPEAT_COUNT; i++) {
-            boolean okay = this.produceEncoder(this.encoderHandle, outputBuffer, channelSelect);
-            if (!okay) {
-                break;
-            }
-            byte[] bytes = Utils.shortArrayToNewByteArray(outputBuffer);
-            list.add(bytes);
-        }
-        int length = 0;
-        for (byte[] byteArray : list) {
-            length += byteArray.length;
-        }
-        byte[] arr = new byte[length];
-        int offset = 0;
-        for (byte[] bytes : list) {
-            System.arraycopy(bytes, 0, arr, offset, bytes.length);
-            offset += bytes.length;
+    public int getFrameByteLength() {
+        if (encoderHandle == 0) return 0;
+        return frameLengthEncoder(encoderHandle) * frameSize;
+    }
+
+    @Synchronized
+    @Override
+    public int render(int channelSelect, ByteBuffer frameBuffer) {
+        if (encoderHandle == 0) return 0;
+        if (!frameBuffer.isDirect()) {
+            throw new IllegalArgumentException("Frame buffer must be direct");
         }
-        return arr;
+        return renderEncoder(encoderHandle, frameBuffer, channelSelect) * frameSize;
     }
 
     @Override
@@ -0,0 +1,97 @@
+package com.github.observant_sun.rattlegram.encoding;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Loads the native library built for the widest instruction set the CPU supports. Every variant exports the same
+ * functions, so exactly one of them may be loaded. The choice can be forced with {@code -Drattlegram.native.variant},
+ * e.g. {@code generic} to rule out the optimized builds.
+ */
+@Slf4j
+final class NativeLibrary {
+
+    private static final String LIBRARY_NAME = "rattlegram";
+    private static final String VARIANT_PROPERTY = "rattlegram.native.variant";
+
+    // same bits as in cpu.cpp
+    private static final int FEATURE_SSE4_1 = 1;
+    private static final int FEATURE_AVX2 = 2;
+
+    private enum Variant {
+        AVX2("avx2", FEATURE_AVX2),
+        SSE4_1("sse4_1", FEATURE_SSE4_1),
+        GENERIC("generic", 0),
+        ;
+
+        private final String name;
+        private final int requiredFeatures;
+
+        Variant(String name, int requiredFeatures) {
+            this.name = name;
+            this.requiredFeatures = requiredFeatures;
+        }
+
+        String getLibraryName() {
+            return this == GENERIC ? LIBRARY_NAME : LIBRARY_NAME + "_" + name;
+        }
+    }
+
+    private static boolean loaded;
+
+    private NativeLibrary() {}
+
+    private static native int cpuFeatures();
+
+    static synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        for (Variant variant : getCandidates()) {
+            try {
+                System.loadLibrary(variant.getLibraryName());
+                log.info("Loaded {} native library", variant.name);
+                loaded = true;
+                return;
+            } catch (UnsatisfiedLinkError e) {
+                if (variant == Variant.GENERIC) {
+                    throw e;
+                }
+                log.warn("Native library {} is not available: {}", variant.getLibraryName(), e.getMessage());
+            }
+        }
+    }
+
+    // widest first, the generic variant is always the last resort
+    private static List<Variant> getCandidates() {
+        String forcedVariant = System.getProperty(VARIANT_PROPERTY);
+        if (forcedVariant != null) {
+            Optional<Variant> forced = Arrays.stream(Variant.values())
+                    .filter(variant -> variant.name.equals(forcedVariant))
+                    .findFirst();
+            if (forced.isEmpty()) {
+                log.warn("Unknown native library variant {}", forcedVariant);
+            }
+            return Stream.concat(forced.stream(), Stream.of(Variant.GENERIC)).distinct().toList();
+        }
+        int features = probeCpuFeatures();
+        return Arrays.stream(Variant.values())
+                .filter(variant -> (features & variant.requiredFeatures) == variant.requiredFeatures)
+                .toList();
+    }
+
+    // builds without the probe, such as development builds of the generic library alone, get the generic variant
+    private static int probeCpuFeatures() {
+        try {
+            System.loadLibrary(LIBRARY_NAME + "_cpu");
+            return cpuFeatures();
+        } catch (UnsatisfiedLinkError e) {
+            log.warn("CPU feature probe is not available, using the generic native library: {}", e.getMessage());
+            return 0;
+        }
+    }
+}
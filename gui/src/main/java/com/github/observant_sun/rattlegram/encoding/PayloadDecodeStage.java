@@ -0,0 +1,74 @@
+package com.github.observant_sun.rattlegram.encoding;
+
+import com.github.observant_sun.rattlegram.entity.DecoderEvent;
+import com.github.observant_sun.rattlegram.entity.DecoderProfile;
+import com.github.observant_sun.rattlegram.jfr.PayloadDecodeEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Runs the forward error correction of received frames on its own thread, so that the receive pipelines feeding it
+ * keep up with the capture while a frame is being decoded.
+ */
+@Slf4j
+class PayloadDecodeStage {
+
+    // a frame takes seconds on air and milliseconds to decode, so this only fills up when the machine is overloaded
+    private static final int QUEUE_CAPACITY = 4;
+
+    private record Job(DecoderEvent event, Consumer<DecoderEvent> callback) {}
+
+    private final BlockingQueue<Job> jobs = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile PayloadDecoder payloadDecoder;
+
+    void start(String threadName) {
+        Thread thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues the soft bits of a frame without blocking, the callback receives the decoded event on the stage thread.
+     *
+     * @return false if the queue is full and the frame was dropped
+     */
+    boolean submit(DecoderEvent event, Consumer<DecoderEvent> callback) {
+        return !closed.get() && jobs.offer(new Job(event, callback));
+    }
+
+    DecoderProfile getProfile() {
+        PayloadDecoder payloadDecoder = this.payloadDecoder;
+        return payloadDecoder == null ? DecoderProfile.empty() : payloadDecoder.getProfile();
+    }
+
+    void close() {
+        closed.set(true);
+    }
+
+    private void run() {
+        try (PayloadDecoder payloadDecoder = PayloadDecoder.newPayloadDecoder()) {
+            this.payloadDecoder = payloadDecoder;
+            while (!closed.get()) {
+                Job job = jobs.poll(100, TimeUnit.MILLISECONDS);
+                if (job == null) {
+                    continue;
+                }
+                PayloadDecodeEvent payloadDecodeEvent = new PayloadDecodeEvent();
+                payloadDecodeEvent.begin();
+                DecoderEvent decoded = payloadDecoder.decode(job.event());
+                payloadDecodeEvent.operationMode = decoded.operationMode();
+                payloadDecodeEvent.bitFlips = decoded.result();
+                payloadDecodeEvent.commit();
+                job.callback().accept(decoded);
+            }
+        } catch (InterruptedException e) {
+            log.warn("Payload decode stage interrupted", e);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.observant_sun.rattlegram.encoding;
+
+import com.github.observant_sun.rattlegram.entity.DecoderEvent;
+import com.github.observant_sun.rattlegram.entity.DecoderProfile;
+
+/**
+ * Runs the polar decoder on the soft bits captured by {@link DecoderSession#decodeFrontEnd}.
+ * Not thread-safe, one instance per decoding thread.
+ */
+public interface PayloadDecoder extends AutoCloseable {
+
+    /**
+     * @return the event with its payload and the number of corrected bit flips, or a negative result on failure
+     */
+    DecoderEvent decode(DecoderEvent event);
+
+    /**
+     * Counters of the polar decoder, safe to call from any thread.
+     */
+    DecoderProfile getProfile();
+
+    @Override
+    void close();
+
+    static PayloadDecoder newPayloadDecoder() {
+        return new PayloadDecoderImpl();
+    }
+}
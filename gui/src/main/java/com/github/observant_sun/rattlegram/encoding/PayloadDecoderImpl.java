@@ -0,0 +1,66 @@
+package com.github.observant_sun.rattlegram.encoding;
+
+import com.github.observant_sun.rattlegram.entity.DecoderEvent;
+import com.github.observant_sun.rattlegram.entity.DecoderProfile;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+
+@Slf4j
+class PayloadDecoderImpl implements PayloadDecoder {
+
+    static {
+        NativeLibrary.load();
+    }
+
+    private long payloadDecoderHandle;
+
+    private final ByteBuffer code = ByteBuffer.allocateDirect(DecoderSessionImpl.CODE_LENGTH);
+    private final ByteBuffer payload = ByteBuffer.allocateDirect(DecoderSessionImpl.PAYLOAD_SIZE);
+
+    PayloadDecoderImpl() {
+        payloadDecoderHandle = createPayloadDecoder();
+        if (payloadDecoderHandle == 0) {
+            throw new RuntimeException("Failed to create payload decoder");
+        }
+    }
+
+    private native long createPayloadDecoder();
+
+    private native void destroyPayloadDecoder(long payloadDecoderHandle);
+
+    private native int decodePayload(long payloadDecoderHandle, ByteBuffer code, int operationMode, ByteBuffer payload);
+
+    private native void profilePayloadDecoder(long payloadDecoderHandle, long[] profile);
+
+    @Override
+    public DecoderEvent decode(DecoderEvent event) {
+        if (event.softBits() == null) {
+            return event;
+        }
+        code.put(0, event.softBits());
+        int result = decodePayload(payloadDecoderHandle, code, event.operationMode(), payload);
+        byte[] payloadBytes = new byte[DecoderSessionImpl.PAYLOAD_SIZE];
+        payload.get(0, payloadBytes);
+        return event.withPayload(result, payloadBytes);
+    }
+
+    @Override
+    public synchronized DecoderProfile getProfile() {
+        if (payloadDecoderHandle == 0) {
+            return DecoderProfile.empty();
+        }
+        long[] profile = new long[DecoderSessionImpl.PROFILE_LENGTH];
+        profilePayloadDecoder(payloadDecoderHandle, profile);
+        return DecoderSessionImpl.readProfile(profile);
+    }
+
+    @Override
+    public synchronized void close() {
+        log.debug("Closing payload decoder {}", payloadDecoderHandle);
+        if (payloadDecoderHandle != 0) {
+            destroyPayloadDecoder(payloadDecoderHandle);
+            payloadDecoderHandle = 0;
+        }
+    }
+}
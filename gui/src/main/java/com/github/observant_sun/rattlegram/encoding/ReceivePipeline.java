@@ -0,0 +1,198 @@
+package com.github.observant_sun.rattlegram.encoding;
+
+import com.github.observant_sun.rattlegram.entity.*;
+import com.github.observant_sun.rattlegram.i18n.I18n;
+import com.github.observant_sun.rattlegram.jfr.DecoderSyncEvent;
+import com.github.observant_sun.rattlegram.jfr.FrameDecodedEvent;
+import com.github.observant_sun.rattlegram.jfr.PreambleFailedEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Decodes one channel of the captured audio on its own thread, with its own native decoder. The forward error
+ * correction of received frames is left to the shared {@link PayloadDecodeStage}.
+ */
+@Slf4j
+class ReceivePipeline {
+
+    private static final int BUFFER_COUNT = 8;
+
+    private final DecoderSession decoderSession;
+    private final String source;
+    private final int frameSize;
+    private final PayloadDecodeStage payloadDecodeStage;
+
+    private final Consumer<Message> newMessageCallback;
+    private final Consumer<StatusUpdate> statusUpdateCallback;
+
+    private final BlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final BlockingQueue<ByteBuffer> filledBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicLong droppedReads = new AtomicLong();
+
+    ReceivePipeline(DecoderSession decoderSession, String source, int frameSize, int bufferSize,
+                    PayloadDecodeStage payloadDecodeStage,
+                    Consumer<Message> newMessageCallback, Consumer<StatusUpdate> statusUpdateCallback) {
+        this.decoderSession = decoderSession;
+        this.source = source;
+        this.frameSize = frameSize;
+        this.payloadDecodeStage = payloadDecodeStage;
+        this.newMessageCallback = newMessageCallback;
+        this.statusUpdateCallback = statusUpdateCallback;
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            freeBuffers.add(ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.nativeOrder()));
+        }
+    }
+
+    void start(String threadName) {
+        Thread thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Copies the first {@code length} bytes of the captured audio. Never blocks the capture thread, which feeds the
+     * other pipelines as well: while all buffers of this pipeline are waiting to be decoded, the read is dropped for
+     * this pipeline only.
+     *
+     * @return false if the read was dropped
+     */
+    boolean submit(ByteBuffer audio, int length) {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            if (droppedReads.getAndIncrement() == 0) {
+                log.warn("Receive pipeline{} is behind, dropping audio", source == null ? "" : " of " + source);
+            }
+            return false;
+        }
+        buffer.clear();
+        buffer.put(0, audio, 0, length);
+        buffer.limit(length);
+        // there are as many slots as buffers
+        filledBuffers.add(buffer);
+        return true;
+    }
+
+    long getDroppedReads() {
+        return droppedReads.get();
+    }
+
+    int spectrum(IntBuffer spectrumPixels, IntBuffer spectrogramPixels, int spectrumTint) {
+        return decoderSession.spectrum(spectrumPixels, spectrogramPixels, spectrumTint);
+    }
+
+    DecoderProfile getProfile() {
+        return decoderSession.getProfile();
+    }
+
+    void close() {
+        closed.set(true);
+    }
+
+    private void run() {
+        try {
+            while (!closed.get()) {
+                ByteBuffer buffer = filledBuffers.poll(100, TimeUnit.MILLISECONDS);
+                if (buffer == null) {
+                    continue;
+                }
+                decoderSession.decodeFrontEnd(buffer, buffer.limit() / frameSize, this::handleEvent);
+                freeBuffers.put(buffer);
+            }
+        } catch (InterruptedException e) {
+            log.warn("Receive pipeline interrupted", e);
+        } finally {
+            decoderSession.close();
+        }
+    }
+
+    private void handleEvent(DecoderEvent event) {
+        switch (event.status()) {
+            case OKAY:
+                break;
+            case FAIL:
+                PreambleFailedEvent preambleFailedEvent = new PreambleFailedEvent();
+                preambleFailedEvent.source = source;
+                preambleFailedEvent.commit();
+                String preambleFailedMsg = I18n.get().getMessage(Decoder.class, "preambleFailed");
+                updateStatus(StatusType.ERROR, preambleFailedMsg);
+                break;
+            case NOPE:
+                fromStatus(event);
+                String modeUnsupportedMsg = I18n.get().getMessage(Decoder.class, "modeUnsupported");
+                newMessage(event, null, modeUnsupportedMsg.formatted(event.operationMode()), MessageType.ERROR_INCOMING);
+                break;
+            case PING:
+                fromStatus(event);
+                String gotPingMsg = I18n.get().getMessage(Decoder.class, "gotPing");
+                newMessage(event, null, gotPingMsg, MessageType.PING_INCOMING);
+                break;
+            case HEAP:
+                String notEnoughMemoryMsg = I18n.get().getMessage(Decoder.class, "notEnoughMemory");
+                updateStatus(StatusType.ERROR, notEnoughMemoryMsg);
+                break;
+            case SYNC:
+                DecoderSyncEvent syncEvent = new DecoderSyncEvent();
+                if (syncEvent.shouldCommit()) {
+                    syncEvent.source = source;
+                    syncEvent.callsign = event.callsign();
+                    syncEvent.operationMode = event.operationMode();
+                    syncEvent.carrierFrequencyOffset = event.carrierFrequencyOffset();
+                    syncEvent.sampleOffset = event.sampleOffset();
+                    syncEvent.commit();
+                }
+                fromStatus(event);
+                break;
+            case DONE:
+                if (event.softBits() != null) {
+                    if (!payloadDecodeStage.submit(event, this::handleEvent)) {
+                        log.warn("Payload decoder is behind, dropping frame from {}", event.callsign());
+                        String decodingFailedMsg = I18n.get().getMessage(Decoder.class, "decodingFailed");
+                        newMessage(event, null, decodingFailedMsg, MessageType.ERROR_INCOMING);
+                    }
+                    break;
+                }
+                FrameDecodedEvent frameDecodedEvent = new FrameDecodedEvent();
+                if (frameDecodedEvent.shouldCommit()) {
+                    frameDecodedEvent.source = source;
+                    frameDecodedEvent.callsign = event.callsign();
+                    frameDecodedEvent.operationMode = event.operationMode();
+                    frameDecodedEvent.carrierFrequencyOffset = event.carrierFrequencyOffset();
+                    frameDecodedEvent.bitFlips = event.result();
+                    frameDecodedEvent.commit();
+                }
+                if (event.result() < 0) {
+                    String decodingFailedMsg = I18n.get().getMessage(Decoder.class, "decodingFailed");
+                    newMessage(event, null, decodingFailedMsg, MessageType.ERROR_INCOMING);
+                } else {
+                    String bitFlipsCorrectedMsg = I18n.get().getMessage(Decoder.class, "bitFlipsCorrected");
+                    updateStatus(StatusType.OK, bitFlipsCorrectedMsg.formatted(event.result()));
+                    newMessage(event, new String(event.payload()).trim(), null, MessageType.NORMAL_INCOMING);
+                }
+                break;
+        }
+    }
+
+    private void newMessage(DecoderEvent event, String body, String decoderResult, MessageType type) {
+        newMessageCallback.accept(new Message(event.callsign(), body, decoderResult, LocalDateTime.now(), type, source));
+    }
+
+    private void fromStatus(DecoderEvent event) {
+        String fromMsg = I18n.get().getMessage(Decoder.class, "from");
+        updateStatus(StatusType.OK, fromMsg.formatted(event.callsign(), event.operationMode(), event.carrierFrequencyOffset()));
+    }
+
+    private void updateStatus(StatusType type, String message) {
+        statusUpdateCallback.accept(new StatusUpdate(type, source == null ? message : source + ": " + message));
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.observant_sun.rattlegram.entity;
+
+public record AudioFileSettings(
+        boolean raw,
+        int rawSampleRate,
+        int rawChannelCount,
+        Integer channelSelect
+) {
+
+}
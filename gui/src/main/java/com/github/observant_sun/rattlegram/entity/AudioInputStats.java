@@ -0,0 +1,19 @@
+package com.github.observant_sun.rattlegram.entity;
+
+/**
+ * Counters of the buffer between audio capture and decoding, all sizes in bytes.
+ *
+ * @param overruns  writes that did not fit into the buffer, the audio that did not fit is dropped
+ * @param underruns stalls of the capture, a read that waited on the empty buffer for longer than the capture
+ *                  normally takes to deliver while it was not paused
+ */
+public record AudioInputStats(
+        int capacity,
+        int highWaterMark,
+        long capturedBytes,
+        long droppedBytes,
+        long overruns,
+        long underruns
+) {
+
+}
@@ -0,0 +1,11 @@
+package com.github.observant_sun.rattlegram.entity;
+
+import java.util.List;
+
+public record BatchDecoderResult(
+        List<DecodedMessage> messages,
+        long sampleCount,
+        double audioSeconds
+) {
+
+}
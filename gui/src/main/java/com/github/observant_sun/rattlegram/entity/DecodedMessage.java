@@ -0,0 +1,13 @@
+package com.github.observant_sun.rattlegram.entity;
+
+import java.time.LocalDateTime;
+
+public record DecodedMessage(
+        String source,
+        LocalDateTime timestamp,
+        long sampleOffset,
+        int sampleRate,
+        DecoderEvent event
+) {
+
+}
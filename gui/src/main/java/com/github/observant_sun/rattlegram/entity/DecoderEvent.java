@@ -0,0 +1,17 @@
+package com.github.observant_sun.rattlegram.entity;
+
+public record DecoderEvent(
+        DecoderStatus status,
+        long sampleOffset,
+        float carrierFrequencyOffset,
+        int operationMode,
+        String callsign,
+        int result,
+        byte[] payload,
+        byte[] softBits
+) {
+
+    public DecoderEvent withPayload(int result, byte[] payload) {
+        return new DecoderEvent(status, sampleOffset, carrierFrequencyOffset, operationMode, callsign, result, payload, null);
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.observant_sun.rattlegram.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time spent in each stage of one or more native decoders since they were created.
+ *
+ * @param stages            one per {@link DecoderStage}, in that order
+ * @param nativeMemoryBytes memory held by the native decoder instances
+ */
+public record DecoderProfile(
+        List<DecoderStageStats> stages,
+        long nativeMemoryBytes
+) {
+
+    public static DecoderProfile empty() {
+        List<DecoderStageStats> stages = new ArrayList<>();
+        for (DecoderStage stage : DecoderStage.values()) {
+            stages.add(new DecoderStageStats(stage, 0, 0, 0));
+        }
+        return new DecoderProfile(List.copyOf(stages), 0);
+    }
+
+    public DecoderProfile plus(DecoderProfile other) {
+        List<DecoderStageStats> sum = new ArrayList<>();
+        for (int i = 0; i < stages.size(); i++) {
+            sum.add(stages.get(i).plus(other.stages.get(i)));
+        }
+        return new DecoderProfile(List.copyOf(sum), nativeMemoryBytes + other.nativeMemoryBytes);
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.observant_sun.rattlegram.entity;
+
+/**
+ * Profiled stages of the native decoder, in the order of the STAGE_ constants in decoder.hh.
+ */
+public enum DecoderStage {
+    INPUT,
+    CORRELATOR,
+    PREAMBLE,
+    SYMBOL_FFT,
+    THEIL_SEN,
+    POLAR,
+}
@@ -0,0 +1,13 @@
+package com.github.observant_sun.rattlegram.entity;
+
+public record DecoderStageStats(
+        DecoderStage stage,
+        long count,
+        long totalNanos,
+        long maxNanos
+) {
+
+    public DecoderStageStats plus(DecoderStageStats other) {
+        return new DecoderStageStats(stage, count + other.count, totalNanos + other.totalNanos, Math.max(maxNanos, other.maxNanos));
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.observant_sun.rattlegram.entity;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Getter
+@RequiredArgsConstructor
+public enum DecoderStatus {
+    OKAY(0),
+    FAIL(1),
+    SYNC(2),
+    DONE(3),
+    HEAP(4),
+    NOPE(5),
+    PING(6),
+    ;
+
+    private final int statusCode;
+
+    private static final Map<Integer, DecoderStatus> codeToStatusMap = new HashMap<>();
+
+    static {
+        for (DecoderStatus status : values()) {
+            codeToStatusMap.put(status.statusCode, status);
+        }
+    }
+
+    public static Optional<DecoderStatus> getByCode(int statusCode) {
+        return Optional.ofNullable(codeToStatusMap.get(statusCode));
+    }
+}
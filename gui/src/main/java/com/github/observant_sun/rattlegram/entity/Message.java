@@ -7,7 +7,8 @@ public record Message(
         String body,
         String decoderResult,
         LocalDateTime timestamp,
-        MessageType type
+        MessageType type,
+        String source
 ) {
 
 }
@@ -6,6 +6,10 @@ import java.nio.IntBuffer;
 
 public record SpectrumDecoderResult(
         PixelBuffer<IntBuffer> spectrumPixels,
-        PixelBuffer<IntBuffer> spectrogramPixels
+        PixelBuffer<IntBuffer> spectrogramPixels,
+        // the spectrogram is a ring of rows, the newest one at the head
+        int spectrogramHead,
+        // rows written since the decoder was started
+        long spectrogramRows
 ) {
 }
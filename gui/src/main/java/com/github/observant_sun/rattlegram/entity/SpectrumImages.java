@@ -1,9 +0,0 @@
-package com.github.observant_sun.rattlegram.entity;
-
-import javafx.scene.image.Image;
-
-public record SpectrumImages(
-        Image spectrum,
-        Image spectrogram
-) {
-}
@@ -0,0 +1,20 @@
+package com.github.observant_sun.rattlegram.entity;
+
+/**
+ * @param expired   repeats dropped because they waited too long
+ * @param dropped   messages rejected or evicted because the queue was full
+ * @param coalesced repeats dropped because the same message was already queued
+ * @param maxWaitMillis time between the moment a message was due and the moment the encoder took it
+ */
+public record TransmitQueueStats(
+        int depth,
+        int repeatDepth,
+        long queued,
+        long dropped,
+        long coalesced,
+        long expired,
+        long maxWaitMillis,
+        long averageWaitMillis
+) {
+
+}
@@ -0,0 +1,14 @@
+package com.github.observant_sun.rattlegram.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.github.observant_sun.rattlegram.AudioPlayback")
+@Label("Audio Playback")
+@Category({"Rattlegram", "Transmit"})
+@Description("The audio output line held by a transmission, from waiting for the line until the audio is drained")
+public class AudioPlaybackEvent extends Event {
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+}
@@ -0,0 +1,14 @@
+package com.github.observant_sun.rattlegram.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.github.observant_sun.rattlegram.AudioRead")
+@Label("Audio Read")
+@Category({"Rattlegram", "Receive"})
+@Description("One read from the audio input, including the wait for captured audio")
+public class AudioReadEvent extends Event {
+
+    @Label("Bytes")
+    @DataAmount
+    public int bytes;
+}
@@ -0,0 +1,26 @@
+package com.github.observant_sun.rattlegram.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.github.observant_sun.rattlegram.DecoderSync")
+@Label("Decoder Sync")
+@Category({"Rattlegram", "Receive"})
+@Description("Preamble of a frame decoded, its payload follows")
+public class DecoderSyncEvent extends Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Callsign")
+    public String callsign;
+
+    @Label("Operation Mode")
+    public int operationMode;
+
+    @Label("Carrier Frequency Offset")
+    @Frequency
+    public float carrierFrequencyOffset;
+
+    @Label("Sample Offset")
+    public long sampleOffset;
+}
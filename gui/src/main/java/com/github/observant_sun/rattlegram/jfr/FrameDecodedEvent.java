@@ -0,0 +1,27 @@
+package com.github.observant_sun.rattlegram.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.github.observant_sun.rattlegram.FrameDecoded")
+@Label("Frame Decoded")
+@Category({"Rattlegram", "Receive"})
+@Description("The payload of a frame was decoded, or failed to decode")
+public class FrameDecodedEvent extends Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Callsign")
+    public String callsign;
+
+    @Label("Operation Mode")
+    public int operationMode;
+
+    @Label("Carrier Frequency Offset")
+    @Frequency
+    public float carrierFrequencyOffset;
+
+    @Label("Bit Flips")
+    @Description("Bit flips corrected by the forward error correction, negative if decoding failed")
+    public int bitFlips;
+}
@@ -0,0 +1,24 @@
+package com.github.observant_sun.rattlegram.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.github.observant_sun.rattlegram.MessageAppended")
+@Label("Message Appended")
+@Category({"Rattlegram", "UI"})
+@Description("A message appended to the messages of the main window")
+public class MessageAppendedEvent extends Event {
+
+    @Label("Callsign")
+    public String callsign;
+
+    @Label("Type")
+    public String type;
+
+    @Label("Source")
+    public String source;
+
+    @Label("Age")
+    @Description("Time since the message was decoded or queued for transmission")
+    @Timespan(Timespan.MILLISECONDS)
+    public long age;
+}
@@ -0,0 +1,17 @@
+package com.github.observant_sun.rattlegram.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.github.observant_sun.rattlegram.PayloadDecode")
+@Label("Payload Decode")
+@Category({"Rattlegram", "Receive"})
+@Description("Forward error correction of one frame")
+public class PayloadDecodeEvent extends Event {
+
+    @Label("Operation Mode")
+    public int operationMode;
+
+    @Label("Bit Flips")
+    @Description("Bit flips corrected by the forward error correction, negative if decoding failed")
+    public int bitFlips;
+}
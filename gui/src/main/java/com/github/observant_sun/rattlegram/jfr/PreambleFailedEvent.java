@@ -0,0 +1,13 @@
+package com.github.observant_sun.rattlegram.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.github.observant_sun.rattlegram.PreambleFailed")
+@Label("Preamble Failed")
+@Category({"Rattlegram", "Receive"})
+@Description("A frame was detected, but its preamble could not be decoded")
+public class PreambleFailedEvent extends Event {
+
+    @Label("Source")
+    public String source;
+}
@@ -0,0 +1,16 @@
+package com.github.observant_sun.rattlegram.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.github.observant_sun.rattlegram.StatusUpdate")
+@Label("Status Update")
+@Category({"Rattlegram", "UI"})
+@Description("A status shown in the main window")
+public class StatusUpdateEvent extends Event {
+
+    @Label("Type")
+    public String type;
+
+    @Label("Message")
+    public String message;
+}
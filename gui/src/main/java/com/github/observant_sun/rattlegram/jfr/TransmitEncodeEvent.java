@@ -0,0 +1,17 @@
+package com.github.observant_sun.rattlegram.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.github.observant_sun.rattlegram.TransmitEncode")
+@Label("Transmit Encode")
+@Category({"Rattlegram", "Transmit"})
+@Description("Rendering of one frame, from the cache if it was rendered before")
+public class TransmitEncodeEvent extends Event {
+
+    @Label("Sample Rate")
+    public int sampleRate;
+
+    @Label("Frame Size")
+    @DataAmount
+    public int frameBytes;
+}
@@ -0,0 +1,19 @@
+package com.github.observant_sun.rattlegram.jfr;
+
+import jdk.jfr.*;
+
+@Name("com.github.observant_sun.rattlegram.TransmitPlay")
+@Label("Transmit Play")
+@Category({"Rattlegram", "Transmit"})
+@Description("Writing of one rendered frame to the audio output")
+public class TransmitPlayEvent extends Event {
+
+    @Label("Frame Size")
+    @DataAmount
+    public int frameBytes;
+
+    @Label("Playback Wait")
+    @Description("Time the rendered frame waited for the playback of earlier frames")
+    @Timespan(Timespan.MILLISECONDS)
+    public long playbackWait;
+}
@@ -0,0 +1,307 @@
+package com.github.observant_sun.rattlegram.journal;
+
+import com.github.observant_sun.rattlegram.entity.Message;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * One file of the journal together with its sparse index. Records are appended through a memory mapping of the whole
+ * file, each one is its payload length, the payload and its CRC32; a zero length marks the end. Every
+ * {@link #INDEX_INTERVAL}th record gets an entry in the index with its timestamp, ordinal and offset, so that neither
+ * opening a segment nor reading its tail has to go through all of it.
+ */
+@Slf4j
+class JournalSegment implements AutoCloseable {
+
+    // "RGJ1"
+    static final int MAGIC = 0x52474a31;
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+    static final int RECORD_OVERHEAD = 2 * Integer.BYTES;
+    static final int INDEX_INTERVAL = 64;
+    // timestamp, ordinal, offset
+    static final int INDEX_ENTRY_SIZE = Long.BYTES + 2 * Integer.BYTES;
+
+    private record IndexEntry(long timestamp, int ordinal, int offset) {}
+
+    private final FileChannel channel;
+    private final FileChannel indexChannel;
+    private final int size;
+    private final int indexSize;
+    // null for segments that are only read
+    private final MappedByteBuffer mapping;
+    private final MappedByteBuffer indexMapping;
+    private final List<IndexEntry> index = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+
+    private int recordCount;
+    private int end;
+
+    private JournalSegment(FileChannel channel, FileChannel indexChannel, int size, boolean writable) throws IOException {
+        this.channel = channel;
+        this.indexChannel = indexChannel;
+        this.size = size;
+        this.indexSize = getIndexSize(size);
+        if (writable) {
+            mapping = map(channel, size);
+            indexMapping = map(indexChannel, indexSize);
+        } else {
+            mapping = null;
+            indexMapping = null;
+        }
+    }
+
+    static JournalSegment create(Path file, Path indexFile, int size) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        JournalSegment segment = new JournalSegment(channel, indexChannel, size, true);
+        segment.mapping.putInt(0, MAGIC);
+        segment.mapping.putInt(Integer.BYTES, size);
+        segment.end = HEADER_SIZE;
+        return segment;
+    }
+
+    /**
+     * Opens an existing segment and finds its end from the last index entry. A record torn by a crash ends the segment,
+     * it is overwritten by the next one appended.
+     */
+    static JournalSegment open(Path file, Path indexFile, boolean writable) throws IOException {
+        StandardOpenOption[] options = writable
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        FileChannel channel = FileChannel.open(file, options);
+        FileChannel indexChannel = null;
+        try {
+            ByteBuffer header = allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a journal segment: " + file);
+            }
+            int size = header.getInt(Integer.BYTES);
+            // a lost index is rebuilt while recovering, a segment that is only read goes without it
+            if (writable) {
+                indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } else if (Files.exists(indexFile)) {
+                indexChannel = FileChannel.open(indexFile, options);
+            }
+            JournalSegment segment = new JournalSegment(channel, indexChannel, size, writable);
+            segment.recover();
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            if (indexChannel != null) {
+                indexChannel.close();
+            }
+            throw e;
+        }
+    }
+
+    private void recover() throws IOException {
+        ByteBuffer indexBuffer = allocate(indexChannel == null ? 0 : (int) Math.min(indexSize, indexChannel.size()));
+        if (indexChannel != null) {
+            indexChannel.read(indexBuffer, 0);
+        }
+        for (int position = 0; position + INDEX_ENTRY_SIZE <= indexBuffer.capacity(); position += INDEX_ENTRY_SIZE) {
+            IndexEntry entry = new IndexEntry(indexBuffer.getLong(position),
+                    indexBuffer.getInt(position + Long.BYTES), indexBuffer.getInt(position + Long.BYTES + Integer.BYTES));
+            // the first record is at the header, an offset of zero is an empty entry
+            if (entry.offset() < HEADER_SIZE || entry.ordinal() != index.size() * INDEX_INTERVAL) {
+                break;
+            }
+            index.add(entry);
+        }
+        int ordinal = index.isEmpty() ? 0 : index.get(index.size() - 1).ordinal();
+        int offset = index.isEmpty() ? HEADER_SIZE : index.get(index.size() - 1).offset();
+        int indexedCount = index.size();
+        ByteBuffer records = read(offset);
+        int position = 0;
+        int length;
+        while ((length = readRecord(records, position)) >= 0) {
+            // entries lost in a crash, every payload starts with its timestamp
+            if (ordinal == index.size() * INDEX_INTERVAL) {
+                index.add(new IndexEntry(records.getLong(position + Integer.BYTES), ordinal, offset + position));
+            }
+            position += RECORD_OVERHEAD + length;
+            ordinal++;
+        }
+        recordCount = ordinal;
+        end = offset + position;
+        // entries of records lost in a crash
+        while (!index.isEmpty() && index.get(index.size() - 1).ordinal() >= recordCount) {
+            index.remove(index.size() - 1);
+        }
+        if (mapping == null) {
+            return;
+        }
+        for (int i = Math.min(indexedCount, index.size()); i < index.size(); i++) {
+            writeIndexEntry(i, index.get(i));
+        }
+        // whatever a crash left behind the end could otherwise turn up again once appended up to it
+        clear(indexMapping, index.size() * INDEX_ENTRY_SIZE, indexSize);
+        clear(mapping, end, size);
+    }
+
+    private static void clear(MappedByteBuffer mapping, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (mapping.get(i) != 0) {
+                mapping.put(i, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * @return false if the record does not fit, the segment is left as it was
+     */
+    boolean append(long timestamp, ByteBuffer payload) {
+        int length = payload.remaining();
+        if (end + RECORD_OVERHEAD + length > size) {
+            return false;
+        }
+        crc.reset();
+        crc.update(payload.duplicate());
+        // the length goes last, until it is written the record is not there
+        mapping.put(end + Integer.BYTES, payload, payload.position(), length);
+        mapping.putInt(end + Integer.BYTES + length, (int) crc.getValue());
+        mapping.putInt(end, length);
+        if (recordCount % INDEX_INTERVAL == 0) {
+            IndexEntry entry = new IndexEntry(timestamp, recordCount, end);
+            writeIndexEntry(index.size(), entry);
+            index.add(entry);
+        }
+        end += RECORD_OVERHEAD + length;
+        recordCount++;
+        return true;
+    }
+
+    private void writeIndexEntry(int slot, IndexEntry entry) {
+        int position = slot * INDEX_ENTRY_SIZE;
+        indexMapping.putLong(position, entry.timestamp());
+        indexMapping.putInt(position + Long.BYTES, entry.ordinal());
+        indexMapping.putInt(position + Long.BYTES + Integer.BYTES, entry.offset());
+    }
+
+    /**
+     * Records from the given ordinal to the end.
+     */
+    List<Message> readFrom(int fromOrdinal) throws IOException {
+        int entry = Math.min(Math.max(fromOrdinal, 0) / INDEX_INTERVAL, index.size() - 1);
+        return readRecords(entry, fromOrdinal, Long.MIN_VALUE);
+    }
+
+    /**
+     * Records with a timestamp not before the given one, assuming the timestamps grow within the segment.
+     */
+    List<Message> readSince(long timestamp) throws IOException {
+        int entry = 0;
+        while (entry + 1 < index.size() && index.get(entry + 1).timestamp() < timestamp) {
+            entry++;
+        }
+        return readRecords(entry, 0, timestamp);
+    }
+
+    private List<Message> readRecords(int entry, int fromOrdinal, long fromTimestamp) throws IOException {
+        List<Message> messages = new ArrayList<>();
+        if (entry < 0) {
+            return messages;
+        }
+        int ordinal = index.get(entry).ordinal();
+        ByteBuffer records = read(index.get(entry).offset());
+        int position = 0;
+        int length;
+        while (ordinal < recordCount && (length = readRecord(records, position)) >= 0) {
+            if (ordinal >= fromOrdinal) {
+                Message message = decode(records.slice(position + Integer.BYTES, length).order(records.order()), ordinal);
+                if (message != null && MessageCodec.getTimestamp(message) >= fromTimestamp) {
+                    messages.add(message);
+                }
+            }
+            position += RECORD_OVERHEAD + length;
+            ordinal++;
+        }
+        return messages;
+    }
+
+    // a record written by a version that knows more than this one is left out
+    private Message decode(ByteBuffer payload, int ordinal) {
+        try {
+            return MessageCodec.decode(payload);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            log.warn("Skipping journal record {}: {}", ordinal, e.getMessage());
+            return null;
+        }
+    }
+
+    // the length of a valid record at the position, or -1 at the end
+    private int readRecord(ByteBuffer records, int position) {
+        if (position + RECORD_OVERHEAD > records.limit()) {
+            return -1;
+        }
+        int length = records.getInt(position);
+        if (length <= 0 || length > records.limit() - position - RECORD_OVERHEAD) {
+            return -1;
+        }
+        crc.reset();
+        crc.update(records.slice(position + Integer.BYTES, length));
+        if (records.getInt(position + Integer.BYTES + length) != (int) crc.getValue()) {
+            return -1;
+        }
+        return length;
+    }
+
+    // the rest of the segment, straight from the mapping if there is one
+    private ByteBuffer read(int offset) throws IOException {
+        if (mapping != null) {
+            return mapping.slice(offset, size - offset).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer buffer = allocate((int) Math.min(size, channel.size()) - offset);
+        channel.read(buffer, offset);
+        return buffer.clear();
+    }
+
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    void force() {
+        mapping.force();
+        indexMapping.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mapping != null) {
+            force();
+        }
+        channel.close();
+        if (indexChannel != null) {
+            indexChannel.close();
+        }
+    }
+
+    private static int getIndexSize(int size) {
+        int maxRecords = size / (RECORD_OVERHEAD + MessageCodec.MIN_PAYLOAD_SIZE);
+        return (maxRecords / INDEX_INTERVAL + 1) * INDEX_ENTRY_SIZE;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, int size) throws IOException {
+        MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        mapping.order(ByteOrder.LITTLE_ENDIAN);
+        return mapping;
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(Math.max(capacity, 0)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
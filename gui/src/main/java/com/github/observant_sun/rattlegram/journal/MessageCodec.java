@@ -0,0 +1,114 @@
+package com.github.observant_sun.rattlegram.journal;
+
+import com.github.observant_sun.rattlegram.entity.Message;
+import com.github.observant_sun.rattlegram.entity.MessageType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Binary form of a {@link Message} in the journal: the timestamp in milliseconds, the code of the type and the
+ * strings, each one as its UTF-8 length followed by the bytes, -1 for null. The timestamp has to come first, the index
+ * is rebuilt from it after a crash. The type codes are fixed here, independent of the order of {@link MessageType}.
+ */
+final class MessageCodec {
+
+    // timestamp, type and four null strings
+    static final int MIN_PAYLOAD_SIZE = Long.BYTES + Byte.BYTES + 4 * Short.BYTES;
+
+    private MessageCodec() {}
+
+    static ByteBuffer encode(Message message) {
+        byte[] callsign = getBytes(message.callsign());
+        byte[] body = getBytes(message.body());
+        byte[] decoderResult = getBytes(message.decoderResult());
+        byte[] source = getBytes(message.source());
+        int size = MIN_PAYLOAD_SIZE + length(callsign) + length(body) + length(decoderResult) + length(source);
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(getTimestamp(message.timestamp()));
+        buffer.put(getTypeCode(message.type()));
+        putBytes(buffer, callsign);
+        putBytes(buffer, body);
+        putBytes(buffer, decoderResult);
+        putBytes(buffer, source);
+        return buffer.flip();
+    }
+
+    static Message decode(ByteBuffer buffer) {
+        LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong()), ZoneOffset.UTC);
+        MessageType type = getType(buffer.get());
+        String callsign = getString(buffer);
+        String body = getString(buffer);
+        String decoderResult = getString(buffer);
+        String source = getString(buffer);
+        return new Message(callsign, body, decoderResult, timestamp, type, source);
+    }
+
+    private static byte getTypeCode(MessageType type) {
+        return switch (type) {
+            case NORMAL_INCOMING -> 0;
+            case PING_INCOMING -> 1;
+            case ERROR_INCOMING -> 2;
+            case NORMAL_OUTGOING -> 3;
+            case PING_OUTGOING -> 4;
+        };
+    }
+
+    private static MessageType getType(byte code) {
+        return switch (code) {
+            case 0 -> MessageType.NORMAL_INCOMING;
+            case 1 -> MessageType.PING_INCOMING;
+            case 2 -> MessageType.ERROR_INCOMING;
+            case 3 -> MessageType.NORMAL_OUTGOING;
+            case 4 -> MessageType.PING_OUTGOING;
+            default -> throw new IllegalArgumentException("Unknown message type code " + code);
+        };
+    }
+
+    // the local time as it was shown, not converted between time zones
+    static long getTimestamp(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static long getTimestamp(Message message) {
+        return getTimestamp(message.timestamp());
+    }
+
+    private static byte[] getBytes(String string) {
+        if (string == null) {
+            return null;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String too long for the journal: " + bytes.length + " bytes");
+        }
+        return bytes;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
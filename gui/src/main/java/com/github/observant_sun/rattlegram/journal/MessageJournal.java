@@ -0,0 +1,47 @@
+package com.github.observant_sun.rattlegram.journal;
+
+import com.github.observant_sun.rattlegram.entity.Message;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Append-only log of all messages on disk, split into segment files of a fixed size of which only the newest ones are
+ * kept. Thread-safe, the files are only touched on the journal's own thread.
+ */
+public interface MessageJournal extends AutoCloseable {
+
+    int DEFAULT_SEGMENT_SIZE = 1 << 20;
+    int DEFAULT_RETAINED_SEGMENTS = 16;
+    long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Queued for the journal's thread, never blocks on the disk. Written to disk by the operating system, synced at
+     * least every sync interval; errors are logged.
+     */
+    void append(Message message);
+
+    /**
+     * The newest messages, oldest first, without reading more of the journal than these. Includes all messages
+     * appended before the call.
+     */
+    List<Message> readLast(int count) throws IOException;
+
+    /**
+     * Messages with a timestamp not before the given one, oldest first.
+     */
+    List<Message> readSince(LocalDateTime timestamp) throws IOException;
+
+    @Override
+    void close() throws IOException;
+
+    static MessageJournal open(Path directory) throws IOException {
+        return new MessageJournalImpl(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_RETAINED_SEGMENTS, DEFAULT_SYNC_INTERVAL_MILLIS);
+    }
+
+    static MessageJournal open(Path directory, int segmentSize, int retainedSegments, long syncIntervalMillis) throws IOException {
+        return new MessageJournalImpl(directory, segmentSize, retainedSegments, syncIntervalMillis);
+    }
+}
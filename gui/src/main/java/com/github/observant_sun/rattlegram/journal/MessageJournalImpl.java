@@ -0,0 +1,253 @@
+package com.github.observant_sun.rattlegram.journal;
+
+import com.github.observant_sun.rattlegram.entity.Message;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Slf4j
+class MessageJournalImpl implements MessageJournal {
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String INDEX_SUFFIX = ".index";
+    private static final String LOCK_FILE = "lock";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("(\\d{16})" + Pattern.quote(SEGMENT_SUFFIX));
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int retainedSegments;
+    // oldest first, the last one is appended to
+    private final List<Long> segmentNumbers = new ArrayList<>();
+    // all writes, syncs and reads of the segments happen here, in the order they were submitted
+    private final ScheduledExecutorService journalExecutor;
+    // two instances appending to the same segment would overwrite each other's records
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    private JournalSegment activeSegment;
+    private boolean dirty;
+    private volatile boolean closed;
+
+    MessageJournalImpl(Path directory, int segmentSize, int retainedSegments, long syncIntervalMillis) throws IOException {
+        if (segmentSize < JournalSegment.HEADER_SIZE + JournalSegment.RECORD_OVERHEAD + MessageCodec.MIN_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("Segment size " + segmentSize + " is too small");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retainedSegments = Math.max(1, retainedSegments);
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        lock = lockChannel.tryLock();
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Journal " + directory + " is used by another instance");
+        }
+        try {
+            openActiveSegment();
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+        journalExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+        journalExecutor.scheduleWithFixedDelay(this::sync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void openActiveSegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .forEach(segmentNumbers::add);
+        }
+        if (segmentNumbers.isEmpty()) {
+            segmentNumbers.add(0L);
+            activeSegment = JournalSegment.create(getSegmentFile(0), getIndexFile(0), segmentSize);
+        } else {
+            long number = segmentNumbers.get(segmentNumbers.size() - 1);
+            activeSegment = JournalSegment.open(getSegmentFile(number), getIndexFile(number), true);
+        }
+    }
+
+    @Override
+    public void append(Message message) {
+        if (closed) {
+            log.warn("Journal is closed, message not appended");
+            return;
+        }
+        try {
+            journalExecutor.execute(() -> {
+                try {
+                    write(message);
+                } catch (IOException | RuntimeException e) {
+                    log.error("Error appending message to the journal", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Journal is closed, message not appended");
+        }
+    }
+
+    private void write(Message message) throws IOException {
+        ByteBuffer payload = MessageCodec.encode(message);
+        long timestamp = MessageCodec.getTimestamp(message);
+        if (!activeSegment.append(timestamp, payload)) {
+            rotate();
+            if (!activeSegment.append(timestamp, payload)) {
+                throw new IOException("Message of " + payload.remaining() + " bytes does not fit into a journal segment");
+            }
+        }
+        dirty = true;
+    }
+
+    private void rotate() throws IOException {
+        activeSegment.close();
+        long number = segmentNumbers.get(segmentNumbers.size() - 1) + 1;
+        activeSegment = JournalSegment.create(getSegmentFile(number), getIndexFile(number), segmentSize);
+        segmentNumbers.add(number);
+        while (segmentNumbers.size() > retainedSegments) {
+            long oldest = segmentNumbers.remove(0);
+            try {
+                Files.deleteIfExists(getSegmentFile(oldest));
+                Files.deleteIfExists(getIndexFile(oldest));
+            } catch (IOException e) {
+                log.warn("Failed to delete journal segment {}", oldest, e);
+            }
+        }
+    }
+
+    @Override
+    public List<Message> readLast(int count) throws IOException {
+        return call(() -> doReadLast(count));
+    }
+
+    private List<Message> doReadLast(int count) throws IOException {
+        List<List<Message>> parts = new ArrayList<>();
+        int remaining = count;
+        for (int i = segmentNumbers.size() - 1; i >= 0 && remaining > 0; i--) {
+            int wanted = remaining;
+            List<Message> part = readSegment(segmentNumbers.get(i), segment -> {
+                int recordCount = segment.getRecordCount();
+                return segment.readFrom(recordCount - Math.min(wanted, recordCount));
+            });
+            remaining -= part.size();
+            parts.add(0, part);
+        }
+        List<Message> messages = new ArrayList<>(count - remaining);
+        parts.forEach(messages::addAll);
+        return messages;
+    }
+
+    @Override
+    public List<Message> readSince(LocalDateTime timestamp) throws IOException {
+        return call(() -> doReadSince(timestamp));
+    }
+
+    private List<Message> doReadSince(LocalDateTime timestamp) throws IOException {
+        long since = MessageCodec.getTimestamp(timestamp);
+        List<Message> messages = new ArrayList<>();
+        for (long number : segmentNumbers) {
+            messages.addAll(readSegment(number, segment -> segment.readSince(since)));
+        }
+        return messages;
+    }
+
+    private interface SegmentReader {
+        List<Message> read(JournalSegment segment) throws IOException;
+    }
+
+    private List<Message> readSegment(long number, SegmentReader reader) throws IOException {
+        if (number == segmentNumbers.get(segmentNumbers.size() - 1)) {
+            return reader.read(activeSegment);
+        }
+        try (JournalSegment segment = JournalSegment.open(getSegmentFile(number), getIndexFile(number), false)) {
+            return reader.read(segment);
+        }
+    }
+
+    private void sync() {
+        if (!dirty || closed) {
+            return;
+        }
+        activeSegment.force();
+        dirty = false;
+    }
+
+    /**
+     * Waits for the messages appended so far to be written, then closes the segment.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            call(() -> {
+                if (closed) {
+                    return null;
+                }
+                closed = true;
+                try {
+                    activeSegment.close();
+                } finally {
+                    lock.release();
+                    lockChannel.close();
+                }
+                return null;
+            });
+        } finally {
+            journalExecutor.shutdown();
+        }
+    }
+
+    // runs the task on the journal thread after everything submitted before it
+    private <T> T call(Callable<T> task) throws IOException {
+        try {
+            return journalExecutor.submit(task).get();
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Journal is closed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the journal");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Path getSegmentFile(long number) {
+        return directory.resolve("%016d%s".formatted(number, SEGMENT_SUFFIX));
+    }
+
+    private Path getIndexFile(long number) {
+        return directory.resolve("%016d%s".formatted(number, INDEX_SUFFIX));
+    }
+}
@@ -0,0 +1,212 @@
+package com.github.observant_sun.rattlegram.model;
+
+import com.github.observant_sun.rattlegram.audio.AudioFileReader;
+import com.github.observant_sun.rattlegram.encoding.DecoderSession;
+import com.github.observant_sun.rattlegram.entity.*;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decodes recordings on a fixed pool of worker threads. Files longer than a chunk are split into chunks that are
+ * decoded independently, each one preceded by an overlap so that frames crossing a chunk boundary are still found.
+ * Every worker owns its native decoder sessions, as they are not reentrant.
+ */
+@Slf4j
+public class BatchDecoder implements AutoCloseable {
+
+    private static final int READ_SECONDS = 1;
+    // longer than a whole frame together with the history the correlator needs before it
+    private static final int OVERLAP_SECONDS = 3;
+
+    private record Job(File file, long startSample, long endSample) {}
+
+    private record SessionKey(int sampleRate, int channelSelect) {}
+
+    private final AudioFileSettings settings;
+    private final int chunkSeconds;
+    private final ExecutorService executor;
+    private final ThreadLocal<Map<SessionKey, DecoderSession>> workerSessions = ThreadLocal.withInitial(HashMap::new);
+    private final Queue<DecoderSession> allSessions = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sampleCount = new AtomicLong();
+
+    public BatchDecoder(int threadCount, int chunkSeconds, AudioFileSettings settings) {
+        this.settings = settings;
+        this.chunkSeconds = chunkSeconds;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threadCount, (runnable) -> {
+            Thread thread = new Thread(runnable, "batch-decoder-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public BatchDecoderResult decode(List<File> files) throws IOException, UnsupportedAudioFileException, InterruptedException {
+        List<Future<List<DecodedMessage>>> futures = new ArrayList<>();
+        double audioSeconds = 0;
+        long samplesBefore = sampleCount.get();
+        for (File file : files) {
+            long frameLength;
+            float sampleRate;
+            try (AudioInputStream stream = AudioFileReader.open(file, settings)) {
+                frameLength = stream.getFrameLength();
+                sampleRate = stream.getFormat().getSampleRate();
+            }
+            if (frameLength != AudioSystem.NOT_SPECIFIED) {
+                audioSeconds += frameLength / sampleRate;
+            }
+            for (Job job : split(file, frameLength, (int) sampleRate)) {
+                futures.add(executor.submit(() -> decodeJob(job)));
+            }
+        }
+        List<DecodedMessage> messages = new ArrayList<>();
+        for (Future<List<DecodedMessage>> future : futures) {
+            try {
+                messages.addAll(future.get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException ioException) {
+                    throw ioException;
+                }
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+        messages.sort(Comparator.comparing(DecodedMessage::timestamp)
+                .thenComparing(DecodedMessage::source)
+                .thenComparingLong(DecodedMessage::sampleOffset));
+        return new BatchDecoderResult(messages, sampleCount.get() - samplesBefore, audioSeconds);
+    }
+
+    private List<Job> split(File file, long frameLength, int sampleRate) {
+        long chunkLength = alignToBlock((long) chunkSeconds * sampleRate, sampleRate);
+        if (chunkLength <= 0 || frameLength == AudioSystem.NOT_SPECIFIED || frameLength <= chunkLength) {
+            return List.of(new Job(file, 0, Long.MAX_VALUE));
+        }
+        List<Job> jobs = new ArrayList<>();
+        for (long start = 0; start < frameLength; start += chunkLength) {
+            long end = start + chunkLength < frameLength ? start + chunkLength : Long.MAX_VALUE;
+            jobs.add(new Job(file, start, end));
+        }
+        return jobs;
+    }
+
+    private List<DecodedMessage> decodeJob(Job job) throws IOException, UnsupportedAudioFileException {
+        List<DecodedMessage> messages = new ArrayList<>();
+        try (AudioInputStream stream = AudioFileReader.open(job.file(), settings)) {
+            AudioFormat format = stream.getFormat();
+            int sampleRate = (int) format.getSampleRate();
+            int frameSize = format.getFrameSize();
+            int channelSelect = AudioFileReader.getChannelSelect(job.file(), settings, format.getChannels());
+            int maxSampleCount = sampleRate * READ_SECONDS;
+            DecoderSession session = getSession(sampleRate, channelSelect, maxSampleCount);
+            // chunks start on block boundaries of the whole file, so they find exactly what a single pass would
+            long overlap = alignToBlock((long) OVERLAP_SECONDS * sampleRate, sampleRate);
+            long warmupStart = Math.max(0, job.startSample() - overlap);
+            AudioFileReader.skipFully(stream, warmupStart * frameSize);
+
+            byte[] bytes = new byte[maxSampleCount * frameSize];
+            ByteBuffer audioBuffer = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.nativeOrder());
+            // silence completes the block left over from the previous job of this session and, at the start of a
+            // file, flushes the rest of that job from the decoder
+            long silence = alignToBlock(session.getSamplesDecoded(), sampleRate) - session.getSamplesDecoded();
+            if (job.startSample() == 0) {
+                silence += overlap;
+            }
+            while (silence > 0) {
+                int samples = (int) Math.min(maxSampleCount, silence);
+                audioBuffer.clear();
+                audioBuffer.put(bytes, 0, samples * frameSize);
+                session.decode(audioBuffer, samples, event -> {});
+                silence -= samples;
+            }
+            long base = session.getSamplesDecoded() - warmupStart;
+            LocalDateTime fileStart = getFileStart(job.file(), stream.getFrameLength(), sampleRate);
+            String source = job.file().getName();
+
+            long position = warmupStart;
+            while (position < job.endSample()) {
+                long remaining = job.endSample() - position;
+                int length = remaining >= maxSampleCount ? bytes.length : (int) remaining * frameSize;
+                length = stream.readNBytes(bytes, 0, length);
+                if (length <= 0) {
+                    break;
+                }
+                audioBuffer.clear();
+                audioBuffer.put(bytes, 0, length);
+                int samples = length / frameSize;
+                session.decode(audioBuffer, samples, event -> {
+                    long offset = event.sampleOffset() - base;
+                    if (offset < job.startSample() || offset >= job.endSample() || !isMessage(event.status())) {
+                        return;
+                    }
+                    LocalDateTime timestamp = fileStart.plusNanos(offset * 1_000_000_000L / sampleRate);
+                    messages.add(new DecodedMessage(source, timestamp, offset, sampleRate, event));
+                });
+                position += samples;
+                if (position > job.startSample()) {
+                    sampleCount.addAndGet(Math.min(samples, position - job.startSample()));
+                }
+            }
+        }
+        return messages;
+    }
+
+    private static long alignToBlock(long sampleCount, int sampleRate) {
+        int blockLength = DecoderSession.getBlockLength(sampleRate);
+        return (sampleCount + blockLength - 1) / blockLength * blockLength;
+    }
+
+    private static boolean isMessage(DecoderStatus status) {
+        return status == DecoderStatus.DONE || status == DecoderStatus.PING || status == DecoderStatus.NOPE;
+    }
+
+    // recordings are assumed to have been written until their modification time
+    private static LocalDateTime getFileStart(File file, long frameLength, int sampleRate) {
+        long durationMillis = frameLength == AudioSystem.NOT_SPECIFIED ? 0 : frameLength * 1000 / sampleRate;
+        Instant start = Instant.ofEpochMilli(file.lastModified() - durationMillis);
+        return LocalDateTime.ofInstant(start, ZoneId.systemDefault());
+    }
+
+    private DecoderSession getSession(int sampleRate, int channelSelect, int maxSampleCount) {
+        return workerSessions.get().computeIfAbsent(new SessionKey(sampleRate, channelSelect), key -> {
+            DecoderSession session = DecoderSession.newDecoderSession(sampleRate, channelSelect, maxSampleCount);
+            allSessions.add(session);
+            return session;
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Batch decoder workers did not stop in time");
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        DecoderSession session;
+        while ((session = allSessions.poll()) != null) {
+            session.close();
+        }
+    }
+}
@@ -7,15 +7,13 @@ import com.github.observant_sun.rattlegram.prefs.AppPreferences;
 import com.github.observant_sun.rattlegram.prefs.InputChannel;
 import com.github.observant_sun.rattlegram.prefs.Pref;
 import com.github.observant_sun.rattlegram.prefs.SampleRate;
+import com.github.observant_sun.rattlegram.util.Utils;
 import javafx.beans.value.ChangeListener;
-import javafx.scene.image.Image;
-import javafx.scene.image.PixelBuffer;
-import javafx.scene.image.WritableImage;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.sound.sampled.Mixer;
-import java.nio.IntBuffer;
 import java.time.Duration;
+import java.util.List;
 import java.util.function.Consumer;
 
 @Slf4j
@@ -40,14 +38,18 @@ public class DecoderInteractor {
         incomingMessagesRepeatValidator = new IncomingMessagesRepeatValidator(model.getIncomingMessages(), debounceDuration);
 
         final int inputSampleRate = prefs.get(Pref.INPUT_SAMPLE_RATE, SampleRate.class).getRateValue();
-        final int inputChannel = prefs.get(Pref.INPUT_CHANNEL, InputChannel.class).getIntValue();
+        final List<InputChannel> receiveChannels = prefs.get(Pref.INPUT_CHANNEL, InputChannel.class).getReceiveChannels();
         final int inputChannelCount = prefs.get(Pref.INPUT_CHANNEL, InputChannel.class).getChannelCount();
+        final List<Integer> receiveCarrierFrequencies = Utils.stringToIntegerList(prefs.get(Pref.RECEIVE_CARRIER_FREQUENCIES, String.class));
+        final int readIntervalMillis = prefs.get(Pref.DECODER_READ_INTERVAL, Integer.class);
+        final int lineBufferMillis = prefs.get(Pref.INPUT_LINE_BUFFER, Integer.class);
+        final int spectrumFrameRate = prefs.get(Pref.SPECTRUM_FRAME_RATE, Integer.class);
         Consumer<Message> newMessageCallback = this::processNewIncomingMessage;
         Consumer<StatusUpdate> statusUpdateCallback = model::processStatusUpdate;
         Runnable spectrumUpdateCallback = this::updateSpectrogram;
         Mixer.Info inputMixerInfo = model.inputMixerInfoProperty().get().mixerInfo();
-        AudioInputHandler audioInputHandler = AudioInputHandler.newAudioInputHandler(inputSampleRate, inputChannelCount, inputMixerInfo);
-        Decoder decoder = Decoder.newDecoder(inputSampleRate, inputChannel, inputChannelCount, newMessageCallback, statusUpdateCallback, spectrumUpdateCallback, audioInputHandler);
+        AudioInputHandler audioInputHandler = AudioInputHandler.newAudioInputHandler(inputSampleRate, inputChannelCount, inputMixerInfo, lineBufferMillis);
+        Decoder decoder = Decoder.newDecoder(inputSampleRate, receiveChannels, receiveCarrierFrequencies, inputChannelCount, readIntervalMillis, spectrumFrameRate, newMessageCallback, statusUpdateCallback, spectrumUpdateCallback, audioInputHandler);
         model.setDecoder(decoder);
         decoder.setUpdateSpectrum(model.showSpectrumAnalyzerProperty().get());
         model.showSpectrumAnalyzerProperty().addListener(showSpectrumAnalyzerPropertyChangeListener);
@@ -71,12 +73,10 @@ public class DecoderInteractor {
     }
 
     private void updateSpectrogram() {
-        SpectrumDecoderResult spectrumDecoderResult = getDecoder().spectrumDecoder();
-        PixelBuffer<IntBuffer> spectrumPixels = spectrumDecoderResult.spectrumPixels();
-        Image spectrumImage = new WritableImage(spectrumPixels);
-        PixelBuffer<IntBuffer> spectrogramPixels = spectrumDecoderResult.spectrogramPixels();
-        Image spectrogramImage = new WritableImage(spectrogramPixels);
-        model.getUpdateSpectrogramPublisher().submit(new SpectrumImages(spectrumImage, spectrogramImage));
+        // frames are dropped while the spectrum analyzer is still showing the previous one
+        if (model.getSpectrumRenderer().render(getDecoder().spectrumDecoder())) {
+            model.getUpdateSpectrogramPublisher().publish();
+        }
     }
 
     private void processNewIncomingMessage(Message incomingMessage) {
@@ -95,7 +95,7 @@ public class DecoderInteractor {
                         log.error("Somehow got an outgoing message in processNewIncomingMessage: {}", incomingMessage);
             }
         }
-        model.getMessages().add(incomingMessage);
+        model.addMessage(incomingMessage);
     }
 
     private void repeatMessage(Message message) {
@@ -105,7 +105,7 @@ public class DecoderInteractor {
             delay = null;
         }
         log.debug("repeat delay: {} ms", delay);
-        OutgoingMessage outgoingMessage = new OutgoingMessage(message.callsign(), message.body(), delay);
+        OutgoingMessage outgoingMessage = new OutgoingMessage(message.callsign(), message.body(), delay, true);
         model.getNewOutgoingMessagePublisher().submit(outgoingMessage);
     }
 
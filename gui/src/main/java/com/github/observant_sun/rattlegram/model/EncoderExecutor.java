@@ -1,21 +1,44 @@
 package com.github.observant_sun.rattlegram.model;
 
 import com.github.observant_sun.rattlegram.audio.AudioOutputHandler;
+import com.github.observant_sun.rattlegram.audio.AudioPlayback;
 import com.github.observant_sun.rattlegram.encoding.Decoder;
 import com.github.observant_sun.rattlegram.encoding.Encoder;
 import com.github.observant_sun.rattlegram.entity.TransmissionSettings;
+import com.github.observant_sun.rattlegram.entity.TransmitQueueStats;
+import com.github.observant_sun.rattlegram.jfr.TransmitEncodeEvent;
+import com.github.observant_sun.rattlegram.jfr.TransmitPlayEvent;
 import com.github.observant_sun.rattlegram.prefs.AppPreferences;
 import com.github.observant_sun.rattlegram.prefs.Pref;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.sound.sampled.LineUnavailableException;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
 
+/**
+ * Transmits in two stages: the encoder thread renders frames and hands them over to the playback thread, so the next
+ * frame is ready while the previous one is still on air. Frames that are ready back to back are played without a gap.
+ * Pending transmissions wait in a bounded {@link TransmitQueue}.
+ * <p>
+ * The encoder thread only takes the next transmission once there is room for its frame, so at most one frame is
+ * rendered ahead of the one on air. A message typed by the operator therefore waits for at most the rest of the frame
+ * on air and one more frame before it is played. Repeats that expire while their frame waits for playback are dropped.
+ */
 @Slf4j
 public class EncoderExecutor implements AutoCloseable {
 
+    private static final int PLAYBACK_PREFETCH = 1;
+
+    private record TransmitJob(byte[] payload, byte[] callsignBytes, TransmissionSettings transmissionSettings,
+                               Runnable beforeTransmit, boolean repeat, long expiresNanos) {}
+
+    private record RenderedFrame(byte[] frame, Runnable beforeTransmit, boolean repeat, long expiresNanos,
+                                 long scheduledNanos, long renderedNanos) {}
+
     @Getter
     private final Encoder encoder;
     @Getter
@@ -23,53 +46,120 @@ public class EncoderExecutor implements AutoCloseable {
     @Getter
     private final Consumer<Exception> transmissionFailureCallback;
 
-    private final ScheduledExecutorService executor;
+    private final TransmitQueue<TransmitJob> transmitQueue;
+    private final long maxRepeatWaitNanos;
+    private final Thread encoderThread;
+    // bounded by the slots, a slot is taken before the transmission is taken from the transmit queue
+    private final BlockingQueue<RenderedFrame> playbackQueue = new LinkedBlockingQueue<>();
+    private final Semaphore playbackSlots = new Semaphore(PLAYBACK_PREFETCH);
+    private final Thread playbackThread;
+    private final RenderedFrameCache frameCache = new RenderedFrameCache();
+    // reused for every rendered frame, grows to the longest one
+    private ByteBuffer frameBuffer = ByteBuffer.allocateDirect(0);
 
-    public EncoderExecutor(Encoder encoder, AudioOutputHandler audioOutputHandler, Consumer<Exception> transmissionFailureCallback) {
+    public EncoderExecutor(Encoder encoder, AudioOutputHandler audioOutputHandler, Consumer<Exception> transmissionFailureCallback,
+                           int queueCapacity, int maxRepeatQueueTimeMillis) {
         this.encoder = encoder;
         this.audioOutputHandler = audioOutputHandler;
         this.transmissionFailureCallback = transmissionFailureCallback;
-        this.executor = Executors.newSingleThreadScheduledExecutor((runnable) -> {
-            Thread thread = new Thread(runnable, "encoder-thread");
-            thread.setDaemon(true);
-            return thread;
-        });
+        this.transmitQueue = new TransmitQueue<>(queueCapacity, maxRepeatQueueTimeMillis);
+        this.maxRepeatWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxRepeatQueueTimeMillis);
+        this.encoderThread = new Thread(this::runEncoder, "encoder-thread");
+        this.encoderThread.setDaemon(true);
+        this.encoderThread.start();
+        this.playbackThread = new Thread(this::runPlayback, "playback-thread");
+        this.playbackThread.setDaemon(true);
+        this.playbackThread.start();
     }
 
-    public void transmit(byte[] payload, byte[] callsignBytes, TransmissionSettings transmissionSettings, Runnable beforeTransmit) {
-        Runnable runnable = () -> {
-            try {
-                log.debug("running transmit");
-                beforeTransmit.run();
-                log.debug("pre-transmit complete");
-                byte[] audioOutputBytes = produceAudioOutputBytes(payload, callsignBytes, transmissionSettings);
-                log.debug("bytes produced");
-                playAudioOutputBytes(audioOutputBytes);
-                log.debug("transmission complete");
-            } catch (Exception e) {
-                log.error("Error transmitting audio output", e);
-                transmissionFailureCallback.accept(e);
-            }
-        };
-        schedule(runnable, transmissionSettings.delay());
+    /**
+     * @param repeat automatic repeats give way to messages typed by the operator
+     * @return false if the queue is full and the message was dropped
+     */
+    public boolean transmit(byte[] payload, byte[] callsignBytes, TransmissionSettings transmissionSettings,
+                            Runnable beforeTransmit, boolean repeat) {
+        Integer delay = transmissionSettings.delay();
+        long expiresNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay == null ? 0 : delay) + maxRepeatWaitNanos;
+        TransmitJob job = new TransmitJob(payload, callsignBytes, transmissionSettings, beforeTransmit, repeat, expiresNanos);
+        // byte buffers compare by content
+        List<ByteBuffer> key = List.of(ByteBuffer.wrap(payload), ByteBuffer.wrap(callsignBytes));
+        TransmitQueue.Result result = transmitQueue.offer(job, key, repeat, delay);
+        log.debug("transmission {}, transmit queue: {}", result, transmitQueue.getStats());
+        return result != TransmitQueue.Result.DROPPED;
+    }
+
+    public TransmitQueueStats getQueueStats() {
+        return transmitQueue.getStats();
     }
 
-    private void schedule(Runnable runnable, Integer delayMs) {
-        if (delayMs != null) {
-            executor.schedule(runnable, delayMs, TimeUnit.MILLISECONDS);
-        } else {
-            executor.submit(runnable);
+    private void runEncoder() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                playbackSlots.acquire();
+                TransmitJob job = transmitQueue.take();
+                try {
+                    long scheduledNanos = System.nanoTime();
+                    log.debug("running transmit");
+                    TransmitEncodeEvent encodeEvent = new TransmitEncodeEvent();
+                    encodeEvent.begin();
+                    byte[] frame = renderFrame(job.payload(), job.callsignBytes(), job.transmissionSettings());
+                    encodeEvent.sampleRate = getEncoder().getSampleRate();
+                    encodeEvent.frameBytes = frame.length;
+                    encodeEvent.commit();
+                    log.debug("frame rendered, frame cache: {}", frameCache.getStats());
+                    playbackQueue.add(new RenderedFrame(frame, job.beforeTransmit(), job.repeat(), job.expiresNanos(),
+                            scheduledNanos, System.nanoTime()));
+                } catch (Exception e) {
+                    playbackSlots.release();
+                    log.error("Error encoding audio output", e);
+                    transmissionFailureCallback.accept(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.debug("Encoder interrupted");
         }
     }
 
-    private byte[] produceAudioOutputBytes(byte[] payload, byte[] callsignBytes, TransmissionSettings transmissionSettings) {
+    private byte[] renderFrame(byte[] payload, byte[] callsignBytes, TransmissionSettings transmissionSettings) {
         Encoder encoder = getEncoder();
+        byte[] cachedFrame = frameCache.get(payload, callsignBytes, transmissionSettings, encoder.getSampleRate());
+        if (cachedFrame != null) {
+            return cachedFrame;
+        }
         encoder.configure(payload, callsignBytes, transmissionSettings.carrierFrequency(), transmissionSettings.noiseSymbols(), transmissionSettings.fancyHeader());
+        int frameByteLength = encoder.getFrameByteLength();
+        if (frameBuffer.capacity() < frameByteLength) {
+            frameBuffer = ByteBuffer.allocateDirect(frameByteLength);
+        }
+        byte[] frame = new byte[encoder.render(transmissionSettings.channelSelect(), frameBuffer)];
+        frameBuffer.get(0, frame);
+        frameCache.put(payload, callsignBytes, transmissionSettings, encoder.getSampleRate(), frame);
+        return frame;
+    }
 
-        return encoder.produce(transmissionSettings.channelSelect());
+    private void runPlayback() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                RenderedFrame first = playbackQueue.take();
+                playbackSlots.release();
+                if (isExpired(first)) {
+                    continue;
+                }
+                try {
+                    playFrames(first);
+                    log.debug("transmission complete");
+                } catch (Exception e) {
+                    log.error("Error transmitting audio output", e);
+                    transmissionFailureCallback.accept(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.debug("Playback interrupted");
+        }
     }
 
-    private void playAudioOutputBytes(byte[] arr) throws LineUnavailableException {
+    // plays the given frame and every frame that is ready by the time the previous one is written, in one go
+    private void playFrames(RenderedFrame first) throws LineUnavailableException {
         Model model = Model.get();
         Boolean stopListeningWhenTransmitting = AppPreferences.get().get(Pref.STOP_LISTENING_WHEN_TRANSMITTING, Boolean.class);
         model.getTransmissionBeginPublisher().publish();
@@ -80,9 +170,29 @@ public class EncoderExecutor implements AutoCloseable {
             decoder.pause();
             log.debug("decoder paused");
         }
-        try {
+        try (AudioPlayback playback = getAudioOutputHandler().startPlayback()) {
             log.debug("playing audio output");
-            getAudioOutputHandler().play(arr);
+            int symbolByteLength = getEncoder().getSymbolByteLength();
+            RenderedFrame renderedFrame = first;
+            while (renderedFrame != null) {
+                long startNanos = System.nanoTime();
+                TransmitPlayEvent playEvent = new TransmitPlayEvent();
+                playEvent.begin();
+                renderedFrame.beforeTransmit().run();
+                byte[] frame = renderedFrame.frame();
+                for (int offset = 0; offset < frame.length; offset += symbolByteLength) {
+                    playback.write(frame, offset, Math.min(symbolByteLength, frame.length - offset));
+                }
+                playEvent.frameBytes = frame.length;
+                playEvent.playbackWait = TimeUnit.NANOSECONDS.toMillis(startNanos - renderedFrame.renderedNanos());
+                playEvent.commit();
+                log.debug("Transmit latency: encode {} ms, waiting for playback {} ms, transmit queue: {}",
+                        TimeUnit.NANOSECONDS.toMillis(renderedFrame.renderedNanos() - renderedFrame.scheduledNanos()),
+                        TimeUnit.NANOSECONDS.toMillis(startNanos - renderedFrame.renderedNanos()),
+                        transmitQueue.getStats());
+                renderedFrame = pollFrame();
+            }
+            playback.drain();
             log.debug("audio output played");
         } finally {
             if (stopListeningWhenTransmitting) {
@@ -95,9 +205,29 @@ public class EncoderExecutor implements AutoCloseable {
         log.debug("published listening begin");
     }
 
+    private RenderedFrame pollFrame() {
+        RenderedFrame renderedFrame;
+        while ((renderedFrame = playbackQueue.poll()) != null) {
+            playbackSlots.release();
+            if (!isExpired(renderedFrame)) {
+                return renderedFrame;
+            }
+        }
+        return null;
+    }
+
+    private boolean isExpired(RenderedFrame renderedFrame) {
+        if (!renderedFrame.repeat() || System.nanoTime() - renderedFrame.expiresNanos() <= 0) {
+            return false;
+        }
+        log.debug("repeat expired while waiting for playback, dropped");
+        return true;
+    }
+
     @Override
     public void close() {
-        executor.shutdownNow();
+        encoderThread.interrupt();
+        playbackThread.interrupt();
 
         encoder.close();
     }
@@ -5,7 +5,9 @@ import com.github.observant_sun.rattlegram.encoding.Encoder;
 import com.github.observant_sun.rattlegram.entity.*;
 import com.github.observant_sun.rattlegram.prefs.*;
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 
+import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.Mixer;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
@@ -13,10 +15,20 @@ import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
+@Slf4j
 public class EncoderInteractor {
 
+    // symbols are written as they are produced, the line only has to hold a few of them
+    private static final int LINE_BUFFER_SYMBOLS = 4;
+
+    private record OutputLineSettings(int sampleRate, int channelCount, boolean artificiallyBlockingPlay, String mixer) {}
+
     private final Model model;
 
+    // outlives the encoder, the line is only reopened when its settings change
+    private AudioOutputHandler audioOutputHandler;
+    private OutputLineSettings outputLineSettings;
+
     @Getter
     private final AtomicReference<EncoderExecutor> encoderExecutorRef = new AtomicReference<>();
 
@@ -25,23 +37,57 @@ public class EncoderInteractor {
         model.getNewOutgoingMessagePublisher().subscribe(this::transmitNewMessage);
     }
 
+    /**
+     * Replaces the encoder with one for the current settings. The output line is kept open unless its settings changed.
+     */
     public void init() {
+        closeEncoderExecutor();
         AppPreferences prefs = AppPreferences.get();
         final int outputSampleRate = prefs.get(Pref.OUTPUT_SAMPLE_RATE, SampleRate.class).getRateValue();
         final int outputChannelCount = prefs.get(Pref.OUTPUT_CHANNEL, OutputChannel.class).getChannelCount();
         Encoder encoder = Encoder.newEncoder(outputSampleRate, outputChannelCount);
         boolean artificiallyBlockingPlay = prefs.get(Pref.BLOCK_OUTPUT_DRAIN_WORKAROUND, Boolean.class);
         Mixer.Info outputMixerInfo = model.outputMixerInfoProperty().get().mixerInfo();
-        AudioOutputHandler audioOutputHandler = AudioOutputHandler.newAudioOutputHandler(outputSampleRate, outputChannelCount, artificiallyBlockingPlay, outputMixerInfo);
+        OutputLineSettings lineSettings = new OutputLineSettings(outputSampleRate, outputChannelCount, artificiallyBlockingPlay, String.valueOf(outputMixerInfo));
+        if (audioOutputHandler == null || !lineSettings.equals(outputLineSettings)) {
+            if (audioOutputHandler != null) {
+                audioOutputHandler.close();
+            }
+            audioOutputHandler = AudioOutputHandler.newAudioOutputHandler(outputSampleRate, outputChannelCount, artificiallyBlockingPlay, outputMixerInfo);
+            outputLineSettings = lineSettings;
+            try {
+                audioOutputHandler.open(LINE_BUFFER_SYMBOLS * encoder.getSymbolByteLength());
+            } catch (LineUnavailableException | RuntimeException e) {
+                // retried on the first transmission
+                log.error("Error opening audio output line", e);
+            }
+        }
         Consumer<Exception> transmissionFailureCallback = (exception) -> {
             model.getStatusUpdatePublisher().submit(
                     new StatusUpdate(StatusType.ERROR, "Transmission failed due to %s: %s".formatted(exception.getClass().getSimpleName(), exception.getMessage())));
         };
-        setEncoderExecutor(new EncoderExecutor(encoder, audioOutputHandler, transmissionFailureCallback));
+        final int transmitQueueCapacity = prefs.get(Pref.TRANSMIT_QUEUE_CAPACITY, Integer.class);
+        final int repeaterMaxQueueTime = prefs.get(Pref.REPEATER_MAX_QUEUE_TIME, Integer.class);
+        setEncoderExecutor(new EncoderExecutor(encoder, audioOutputHandler, transmissionFailureCallback, transmitQueueCapacity, repeaterMaxQueueTime));
     }
 
+    /**
+     * Closes the encoder and the output line, for good.
+     */
     public void closeResources() {
-        encoderExecutorRef.get().close();
+        closeEncoderExecutor();
+        if (audioOutputHandler != null) {
+            audioOutputHandler.close();
+            audioOutputHandler = null;
+            outputLineSettings = null;
+        }
+    }
+
+    private void closeEncoderExecutor() {
+        EncoderExecutor encoderExecutor = encoderExecutorRef.get();
+        if (encoderExecutor != null) {
+            encoderExecutor.close();
+        }
     }
 
     public void transmitNewMessage(OutgoingMessage message) {
@@ -63,9 +109,14 @@ public class EncoderInteractor {
         TransmissionSettings transmissionSettings = new TransmissionSettings(carrierFrequency, noiseSymbols, fancyHeader, channelSelect, delay);
         Runnable beforeTransmitRunnable = () -> {
             MessageType messageType = bodyFinal.isEmpty() ? MessageType.PING_OUTGOING : MessageType.NORMAL_OUTGOING;
-            model.getMessages().add(new Message(callsignFinal, bodyFinal, null, LocalDateTime.now(), messageType));
+            model.addMessage(new Message(callsignFinal, bodyFinal, null, LocalDateTime.now(), messageType, null));
         };
-        getEncoderExecutor().transmit(payload, callsignBytes, transmissionSettings, beforeTransmitRunnable);
+        boolean queued = getEncoderExecutor().transmit(payload, callsignBytes, transmissionSettings, beforeTransmitRunnable, message.repeat());
+        if (!queued) {
+            log.warn("Transmit queue is full, dropping message: {}", message);
+            StatusType statusType = message.repeat() ? StatusType.IGNORED : StatusType.ERROR;
+            model.getStatusUpdatePublisher().submit(new StatusUpdate(statusType, "Transmit queue is full, message dropped"));
+        }
     }
 
     public EncoderExecutor getEncoderExecutor() {
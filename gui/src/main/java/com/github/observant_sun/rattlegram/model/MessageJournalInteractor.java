@@ -0,0 +1,59 @@
+package com.github.observant_sun.rattlegram.model;
+
+import com.github.observant_sun.rattlegram.entity.Message;
+import com.github.observant_sun.rattlegram.journal.MessageJournal;
+import com.github.observant_sun.rattlegram.prefs.AppPreferences;
+import com.github.observant_sun.rattlegram.prefs.Pref;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+@Slf4j
+public class MessageJournalInteractor {
+
+    private static final Path JOURNAL_DIRECTORY = Path.of(System.getProperty("user.home"), ".rattlegram-desktop", "journal");
+
+    private final Model model;
+
+    public MessageJournalInteractor(Model model) {
+        this.model = model;
+    }
+
+    /**
+     * Opens the journal and puts the last messages from it back into the log. Has to be called on the FX thread before
+     * any message is added, the application goes on without the journal if it cannot be opened.
+     */
+    public void init() {
+        MessageJournal messageJournal;
+        try {
+            messageJournal = MessageJournal.open(JOURNAL_DIRECTORY);
+        } catch (IOException | RuntimeException e) {
+            log.error("Error opening message journal in {}", JOURNAL_DIRECTORY, e);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> close(messageJournal), "journal-shutdown-thread"));
+        AppPreferences prefs = AppPreferences.get();
+        int replaySize = Math.min(prefs.get(Pref.MESSAGE_REPLAY_SIZE, Integer.class), prefs.get(Pref.MESSAGE_LOG_SIZE, Integer.class));
+        if (replaySize > 0) {
+            try {
+                long start = System.nanoTime();
+                List<Message> messages = messageJournal.readLast(replaySize);
+                model.getMessages().addAll(0, messages);
+                log.debug("Replayed {} messages from the journal in {} us", messages.size(), (System.nanoTime() - start) / 1000);
+            } catch (IOException | RuntimeException e) {
+                log.error("Error replaying messages from the journal", e);
+            }
+        }
+        model.getMessageJournalReference().set(messageJournal);
+    }
+
+    private static void close(MessageJournal messageJournal) {
+        try {
+            messageJournal.close();
+        } catch (IOException e) {
+            log.error("Error closing message journal", e);
+        }
+    }
+}
@@ -3,9 +3,11 @@ package com.github.observant_sun.rattlegram.model;
 import com.github.observant_sun.rattlegram.util.AudioUtils;
 import com.github.observant_sun.rattlegram.encoding.Decoder;
 import com.github.observant_sun.rattlegram.entity.*;
+import com.github.observant_sun.rattlegram.journal.MessageJournal;
 import com.github.observant_sun.rattlegram.prefs.*;
 import com.github.observant_sun.rattlegram.util.SimplePublisher;
 import com.github.observant_sun.rattlegram.util.VoidPublisher;
+import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -28,6 +30,8 @@ public class Model {
 
     @Getter
     private final AtomicReference<Decoder> decoderReference = new AtomicReference<>();
+    @Getter
+    private final AtomicReference<MessageJournal> messageJournalReference = new AtomicReference<>();
 
     @Getter
     private ObservableList<Message> messages = FXCollections.observableArrayList();
@@ -47,12 +51,32 @@ public class Model {
     @Getter
     private final VoidPublisher listeningBeginPublisher = new VoidPublisher();
     @Getter
-    private final SimplePublisher<SpectrumImages> updateSpectrogramPublisher = new SimplePublisher<>();
+    private final VoidPublisher updateSpectrogramPublisher = new VoidPublisher();
+    @Getter
+    private final SpectrumRenderer spectrumRenderer = new SpectrumRenderer();
 
     private Model() {
 
     }
 
+    /**
+     * Appends a message to the log, dropping the oldest ones beyond the configured size, and queues it for the journal.
+     * May be called from any thread, the list itself is only changed on the FX thread.
+     */
+    void addMessage(Message message) {
+        MessageJournal messageJournal = messageJournalReference.get();
+        if (messageJournal != null) {
+            messageJournal.append(message);
+        }
+        Platform.runLater(() -> {
+            messages.add(message);
+            int maxSize = AppPreferences.get().get(Pref.MESSAGE_LOG_SIZE, Integer.class);
+            if (messages.size() > maxSize) {
+                messages.remove(0, messages.size() - maxSize);
+            }
+        });
+    }
+
     void processStatusUpdate(StatusUpdate statusUpdate) {
         statusUpdates.add(statusUpdate);
         statusUpdatePublisher.submit(statusUpdate);
@@ -0,0 +1,64 @@
+package com.github.observant_sun.rattlegram.model;
+
+import com.github.observant_sun.rattlegram.entity.TransmissionSettings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Rendered PCM of recently transmitted frames, so that repeated frames skip the encoder. Evicts the least recently
+ * used frames once the total size exceeds the limit.
+ */
+class RenderedFrameCache {
+
+    // a frame at 48 kHz stereo is about 1.6 MiB
+    private static final long MAX_BYTES = 32L << 20;
+
+    private record Key(byte[] payload, byte[] callsign, int carrierFrequency, int noiseSymbols, boolean fancyHeader,
+                       int channelSelect, int sampleRate) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key
+                    && Arrays.equals(payload, key.payload)
+                    && Arrays.equals(callsign, key.callsign)
+                    && carrierFrequency == key.carrierFrequency
+                    && noiseSymbols == key.noiseSymbols
+                    && fancyHeader == key.fancyHeader
+                    && channelSelect == key.channelSelect
+                    && sampleRate == key.sampleRate;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Arrays.hashCode(payload), Arrays.hashCode(callsign), carrierFrequency, noiseSymbols,
+                    fancyHeader, channelSelect, sampleRate);
+        }
+    }
+
+    private final Cache<Key, byte[]> cache = CacheBuilder.newBuilder()
+            .maximumWeight(MAX_BYTES)
+            .weigher((Key key, byte[] frame) -> frame.length)
+            .recordStats()
+            .build();
+
+    byte[] get(byte[] payload, byte[] callsign, TransmissionSettings settings, int sampleRate) {
+        return cache.getIfPresent(key(payload, callsign, settings, sampleRate));
+    }
+
+    void put(byte[] payload, byte[] callsign, TransmissionSettings settings, int sampleRate, byte[] frame) {
+        cache.put(key(payload, callsign, settings, sampleRate), frame);
+    }
+
+    CacheStats getStats() {
+        return cache.stats();
+    }
+
+    private static Key key(byte[] payload, byte[] callsign, TransmissionSettings settings, int sampleRate) {
+        return new Key(payload.clone(), callsign.clone(), settings.carrierFrequency(), settings.noiseSymbols(),
+                settings.fancyHeader(), settings.channelSelect(), sampleRate);
+    }
+}
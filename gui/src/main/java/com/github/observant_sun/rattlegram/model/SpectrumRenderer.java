@@ -0,0 +1,136 @@
+package com.github.observant_sun.rattlegram.model;
+
+import com.github.observant_sun.rattlegram.entity.SpectrumDecoderResult;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Double-buffered images of the spectrum analyzer. Frames are copied into the hidden pair of images on the spectrum
+ * thread, and the FX thread swaps it with the shown one, so no image is written to while it is displayed and nothing
+ * is allocated per frame. The spectrogram image keeps the ring layout of the decoder, only rows written since the
+ * hidden image was last updated are copied.
+ */
+public class SpectrumRenderer {
+
+    private static final class Frame {
+        private final PixelBuffer<IntBuffer> spectrumPixels;
+        private final PixelBuffer<IntBuffer> spectrogramPixels;
+        private final WritableImage spectrumImage;
+        private final WritableImage spectrogramImage;
+        private int spectrogramHead;
+        private long spectrogramRows;
+        // the rows are counted per decoder, a new one starts over with its own pixels
+        private PixelBuffer<IntBuffer> spectrogramSource;
+
+        private Frame(PixelBuffer<IntBuffer> spectrumSource, PixelBuffer<IntBuffer> spectrogramSource) {
+            spectrumPixels = newPixelBuffer(spectrumSource.getWidth(), spectrumSource.getHeight());
+            spectrogramPixels = newPixelBuffer(spectrogramSource.getWidth(), spectrogramSource.getHeight());
+            spectrumImage = new WritableImage(spectrumPixels);
+            spectrogramImage = new WritableImage(spectrogramPixels);
+        }
+
+        private boolean fits(PixelBuffer<IntBuffer> spectrumSource, PixelBuffer<IntBuffer> spectrogramSource) {
+            return spectrumPixels.getWidth() == spectrumSource.getWidth()
+                    && spectrumPixels.getHeight() == spectrumSource.getHeight()
+                    && spectrogramPixels.getWidth() == spectrogramSource.getWidth()
+                    && spectrogramPixels.getHeight() == spectrogramSource.getHeight();
+        }
+    }
+
+    private final Frame[] frames = new Frame[2];
+    private int shown;
+    // set once a frame is copied, cleared by the FX thread when it is shown
+    private final AtomicBoolean framePending = new AtomicBoolean(false);
+
+    /**
+     * Copies the pixels into the hidden images. Called from a single thread other than the FX thread.
+     *
+     * @return false if the previous frame has not been shown yet, the pixels are dropped then
+     */
+    public boolean render(SpectrumDecoderResult spectrumDecoderResult) {
+        if (framePending.get()) {
+            return false;
+        }
+        PixelBuffer<IntBuffer> spectrumSource = spectrumDecoderResult.spectrumPixels();
+        PixelBuffer<IntBuffer> spectrogramSource = spectrumDecoderResult.spectrogramPixels();
+        int hidden = 1 - shown;
+        if (frames[hidden] == null || !frames[hidden].fits(spectrumSource, spectrogramSource)) {
+            frames[hidden] = new Frame(spectrumSource, spectrogramSource);
+        }
+        Frame frame = frames[hidden];
+        copy(spectrumSource, frame.spectrumPixels);
+        copySpectrogram(spectrumDecoderResult, frame);
+        framePending.set(true);
+        return true;
+    }
+
+    /**
+     * Swaps the images, to be called on the FX thread before showing {@link #getSpectrumImage} and
+     * {@link #getSpectrogramImage}.
+     */
+    public void show() {
+        if (!framePending.get()) {
+            return;
+        }
+        int hidden = 1 - shown;
+        // the images may have been shown before, their textures have to be uploaded again
+        frames[hidden].spectrumPixels.updateBuffer(pixelBuffer -> null);
+        frames[hidden].spectrogramPixels.updateBuffer(pixelBuffer -> null);
+        shown = hidden;
+        framePending.set(false);
+    }
+
+    public WritableImage getSpectrumImage() {
+        return frames[shown] == null ? null : frames[shown].spectrumImage;
+    }
+
+    public WritableImage getSpectrogramImage() {
+        return frames[shown] == null ? null : frames[shown].spectrogramImage;
+    }
+
+    /**
+     * Row of the newest line in {@link #getSpectrogramImage}, the image is to be shown from this row down, followed by
+     * the rows above it.
+     */
+    public int getSpectrogramHead() {
+        return frames[shown] == null ? 0 : frames[shown].spectrogramHead;
+    }
+
+    private static void copySpectrogram(SpectrumDecoderResult spectrumDecoderResult, Frame frame) {
+        PixelBuffer<IntBuffer> source = spectrumDecoderResult.spectrogramPixels();
+        long sourceRows = spectrumDecoderResult.spectrogramRows();
+        int height = source.getHeight();
+        int width = source.getWidth();
+        if (frame.spectrogramSource != source || sourceRows < frame.spectrogramRows
+                || sourceRows - frame.spectrogramRows >= height) {
+            copy(source, frame.spectrogramPixels);
+        } else {
+            IntBuffer sourceBuffer = source.getBuffer();
+            IntBuffer destinationBuffer = frame.spectrogramPixels.getBuffer();
+            // row number n is written to the head left after n + 1 rows
+            for (long row = frame.spectrogramRows; row < sourceRows; row++) {
+                int offset = (int) Math.floorMod(-(row + 1), (long) height) * width;
+                destinationBuffer.put(offset, sourceBuffer, offset, width);
+            }
+        }
+        frame.spectrogramHead = spectrumDecoderResult.spectrogramHead();
+        frame.spectrogramRows = sourceRows;
+        frame.spectrogramSource = source;
+    }
+
+    private static void copy(PixelBuffer<IntBuffer> source, PixelBuffer<IntBuffer> destination) {
+        IntBuffer destinationBuffer = destination.getBuffer();
+        destinationBuffer.put(0, source.getBuffer(), 0, destinationBuffer.capacity());
+    }
+
+    private static PixelBuffer<IntBuffer> newPixelBuffer(int width, int height) {
+        IntBuffer buffer = ByteBuffer.allocateDirect(width * height * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        return new PixelBuffer<>(width, height, buffer, PixelFormat.getIntArgbPreInstance());
+    }
+}
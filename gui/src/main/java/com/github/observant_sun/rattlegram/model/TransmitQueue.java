@@ -0,0 +1,134 @@
+package com.github.observant_sun.rattlegram.model;
+
+import com.github.observant_sun.rattlegram.entity.TransmitQueueStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded queue of pending transmissions. Messages typed by the operator go before automatic repeats, repeats of a
+ * message that is already queued are coalesced, and repeats that waited too long are dropped. When the queue is full,
+ * an operator message evicts the oldest repeat, while a new repeat is dropped.
+ */
+class TransmitQueue<T> {
+
+    enum Result {
+        QUEUED, COALESCED, DROPPED
+    }
+
+    private record Entry<T>(T item, Object key, boolean repeat, long sequence, long readyNanos) {}
+
+    private static final Comparator<Entry<?>> PRIORITY = Comparator.<Entry<?>, Boolean>comparing(Entry::repeat)
+            .thenComparingLong(Entry::sequence);
+
+    private final int capacity;
+    private final long maxRepeatWaitNanos;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final List<Entry<T>> entries = new ArrayList<>();
+    private long sequence;
+
+    private long queued, dropped, coalesced, expired, taken;
+    private long maxWaitNanos, totalWaitNanos;
+
+    TransmitQueue(int capacity, long maxRepeatWaitMillis) {
+        this(capacity, maxRepeatWaitMillis, System::nanoTime);
+    }
+
+    TransmitQueue(int capacity, long maxRepeatWaitMillis, LongSupplier nanoClock) {
+        this.capacity = capacity;
+        this.maxRepeatWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxRepeatWaitMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @param key      repeats with equal keys are coalesced
+     * @param delayMs  the item is not taken before this delay, null for none
+     */
+    Result offer(T item, Object key, boolean repeat, Integer delayMs) {
+        long readyNanos = nanoClock.getAsLong() + (delayMs == null ? 0 : TimeUnit.MILLISECONDS.toNanos(delayMs));
+        lock.lock();
+        try {
+            if (repeat && entries.stream().anyMatch(entry -> Objects.equals(entry.key(), key))) {
+                coalesced++;
+                return Result.COALESCED;
+            }
+            if (entries.size() >= capacity) {
+                Entry<T> oldestRepeat = repeat ? null : entries.stream()
+                        .filter(Entry::repeat)
+                        .min(Comparator.comparingLong(Entry::sequence))
+                        .orElse(null);
+                dropped++;
+                if (oldestRepeat == null) {
+                    return Result.DROPPED;
+                }
+                entries.remove(oldestRepeat);
+            }
+            entries.add(new Entry<>(item, key, repeat, sequence++, readyNanos));
+            queued++;
+            changed.signalAll();
+            return Result.QUEUED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until an item is due, then returns the one with the highest priority among the due items.
+     */
+    T take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                long now = nanoClock.getAsLong();
+                expired += removeExpired(now);
+                Entry<T> next = entries.stream()
+                        .filter(entry -> entry.readyNanos() <= now)
+                        .min(PRIORITY)
+                        .orElse(null);
+                if (next != null) {
+                    entries.remove(next);
+                    long waitNanos = now - next.readyNanos();
+                    taken++;
+                    totalWaitNanos += waitNanos;
+                    maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+                    return next.item();
+                }
+                long untilReady = entries.stream().mapToLong(entry -> entry.readyNanos() - now).min().orElse(-1);
+                if (untilReady < 0) {
+                    changed.await();
+                } else {
+                    changed.awaitNanos(untilReady);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int removeExpired(long now) {
+        int size = entries.size();
+        entries.removeIf(entry -> entry.repeat() && now - entry.readyNanos() > maxRepeatWaitNanos);
+        return size - entries.size();
+    }
+
+    TransmitQueueStats getStats() {
+        lock.lock();
+        try {
+            int repeatDepth = (int) entries.stream().filter(Entry::repeat).count();
+            return new TransmitQueueStats(entries.size(), repeatDepth, queued, dropped, coalesced, expired,
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos),
+                    taken == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos / taken));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
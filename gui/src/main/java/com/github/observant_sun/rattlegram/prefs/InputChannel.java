@@ -3,6 +3,8 @@ package com.github.observant_sun.rattlegram.prefs;
 import com.github.observant_sun.rattlegram.i18n.I18n;
 import lombok.Getter;
 
+import java.util.List;
+
 @Getter
 public enum InputChannel {
     DEFAULT(0, 1),
@@ -10,14 +12,18 @@ public enum InputChannel {
     SECOND(2, 2),
     SUMMATION(3, 2),
     ANALYTIC(4, 2),
+    // two independent receivers, intValue is not used
+    FIRST_AND_SECOND(-1, 2, FIRST, SECOND),
     ;
 
     private final int intValue;
     private final int channelCount;
+    private final List<InputChannel> receiveChannels;
 
-    InputChannel(int intValue, int channelCount) {
+    InputChannel(int intValue, int channelCount, InputChannel... receiveChannels) {
         this.intValue = intValue;
         this.channelCount = channelCount;
+        this.receiveChannels = receiveChannels.length == 0 ? List.of(this) : List.of(receiveChannels);
     }
 
     @Override
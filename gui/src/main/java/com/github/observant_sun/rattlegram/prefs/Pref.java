@@ -23,6 +23,14 @@ public enum Pref {
     BLOCK_OUTPUT_DRAIN_WORKAROUND(Boolean.class),
     INPUT_AUDIO_MIXER_STRING_REPRESENTATION(String.class),
     OUTPUT_AUDIO_MIXER_STRING_REPRESENTATION(String.class),
+    DECODER_READ_INTERVAL(Integer.class),
+    RECEIVE_CARRIER_FREQUENCIES(String.class),
+    INPUT_LINE_BUFFER(Integer.class),
+    TRANSMIT_QUEUE_CAPACITY(Integer.class),
+    REPEATER_MAX_QUEUE_TIME(Integer.class),
+    SPECTRUM_FRAME_RATE(Integer.class),
+    MESSAGE_LOG_SIZE(Integer.class),
+    MESSAGE_REPLAY_SIZE(Integer.class),
     ;
 
     private final Class<?> prefClass;
@@ -8,6 +8,8 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 @Slf4j
@@ -32,6 +34,13 @@ public final class Utils {
         return Optional.ofNullable(integer);
     }
 
+    public static List<Integer> stringToIntegerList(String string) {
+        return Arrays.stream(string.split("[,;\\s]+"))
+                .map(Utils::stringToInteger)
+                .flatMap(Optional::stream)
+                .toList();
+    }
+
     public static String truncateStringToUtf8ByteLength(String string, int maxByteLength) {
         Charset charset = StandardCharsets.UTF_8;
         byte[] bytes = string.getBytes(charset);
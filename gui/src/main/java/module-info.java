@@ -8,6 +8,7 @@ module rattlegram {
     requires ch.qos.logback.classic;
     requires java.desktop;
     requires java.prefs;
+    requires jdk.jfr;
     requires static lombok;
     requires com.google.common;
 
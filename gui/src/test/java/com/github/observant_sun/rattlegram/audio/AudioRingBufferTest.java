@@ -0,0 +1,147 @@
+package com.github.observant_sun.rattlegram.audio;
+
+import com.github.observant_sun.rattlegram.entity.AudioInputStats;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AudioRingBufferTest {
+
+    private final int frameSize = 4;
+    private long now;
+    AudioRingBuffer ringBuffer = new AudioRingBuffer(60, frameSize, 20, () -> now);
+
+    private static byte[] sequence(int start, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (start + i);
+        }
+        return bytes;
+    }
+
+    @Test
+    void capacity_roundedUpToPowerOfTwo() {
+        assertEquals(64, ringBuffer.capacity());
+        assertEquals(64, new AudioRingBuffer(64, frameSize, 20).capacity());
+    }
+
+    @Test
+    void write_read_wrapsAround() {
+        ByteBuffer destination = ByteBuffer.allocate(64);
+        for (int round = 0; round < 5; round++) {
+            byte[] source = sequence(round * 40, 40);
+            assertEquals(40, ringBuffer.write(source, 0, source.length));
+            destination.clear();
+            assertEquals(40, ringBuffer.read(destination));
+            assertArrayEquals(source, Arrays.copyOf(destination.array(), 40));
+        }
+        destination.clear();
+        assertEquals(0, ringBuffer.read(destination));
+    }
+
+    @Test
+    void read_onlyWholeFrames() {
+        ringBuffer.write(sequence(0, 16), 0, 16);
+        ByteBuffer destination = ByteBuffer.allocate(10);
+        assertEquals(8, ringBuffer.read(destination));
+        assertEquals(2, destination.remaining());
+    }
+
+    @Test
+    void write_overrun_dropsAndCounts() {
+        assertEquals(48, ringBuffer.write(sequence(0, 48), 0, 48));
+        assertEquals(16, ringBuffer.write(sequence(48, 24), 0, 24));
+        assertEquals(0, ringBuffer.write(sequence(72, 8), 0, 8));
+
+        AudioInputStats stats = ringBuffer.getStats();
+        assertEquals(64, stats.capacity());
+        assertEquals(64, stats.highWaterMark());
+        assertEquals(64, stats.capturedBytes());
+        assertEquals(16, stats.droppedBytes());
+        assertEquals(2, stats.overruns());
+
+        ByteBuffer destination = ByteBuffer.allocate(64);
+        assertEquals(64, ringBuffer.read(destination));
+        assertArrayEquals(sequence(0, 64), destination.array());
+    }
+
+    @Test
+    void awaitData_shortWaits_noUnderrun() {
+        for (int i = 0; i < 10; i++) {
+            ringBuffer.awaitData();
+            now += TimeUnit.MILLISECONDS.toNanos(10);
+            ringBuffer.awaitData();
+            ringBuffer.write(sequence(0, 4), 0, 4);
+            ringBuffer.read(ByteBuffer.allocate(4));
+        }
+        assertEquals(0, ringBuffer.getStats().underruns());
+    }
+
+    @Test
+    void awaitData_stall_countsOneUnderrun() {
+        for (int i = 0; i < 10; i++) {
+            ringBuffer.awaitData();
+            now += TimeUnit.MILLISECONDS.toNanos(10);
+        }
+        assertEquals(1, ringBuffer.getStats().underruns());
+
+        ringBuffer.write(sequence(0, 4), 0, 4);
+        ringBuffer.read(ByteBuffer.allocate(4));
+        for (int i = 0; i < 10; i++) {
+            ringBuffer.awaitData();
+            now += TimeUnit.MILLISECONDS.toNanos(10);
+        }
+        assertEquals(2, ringBuffer.getStats().underruns());
+    }
+
+    @Test
+    void awaitData_paused_noUnderrun() {
+        ringBuffer.setPaused(true);
+        for (int i = 0; i < 10; i++) {
+            ringBuffer.awaitData();
+            now += TimeUnit.MILLISECONDS.toNanos(10);
+        }
+        ringBuffer.setPaused(false);
+        ringBuffer.awaitData();
+        now += TimeUnit.MILLISECONDS.toNanos(10);
+        ringBuffer.awaitData();
+        assertEquals(0, ringBuffer.getStats().underruns());
+    }
+
+    @Test
+    void concurrentWriterAndReader_transferEverything() throws InterruptedException {
+        int total = 1 << 20;
+        Thread writer = new Thread(() -> {
+            byte[] chunk = new byte[12];
+            for (int position = 0; position < total; ) {
+                for (int i = 0; i < chunk.length; i++) {
+                    chunk[i] = (byte) (position + i);
+                }
+                int length = Math.min(chunk.length, total - position);
+                // dropped bytes are written again, so the reader can check the order of everything
+                position += ringBuffer.write(chunk, 0, length);
+                Thread.yield();
+            }
+        });
+        writer.start();
+        ByteBuffer destination = ByteBuffer.allocate(20);
+        int position = 0;
+        while (position < total) {
+            destination.clear();
+            int read = ringBuffer.read(destination);
+            if (read == 0) {
+                ringBuffer.awaitData();
+            }
+            for (int i = 0; i < read; i++) {
+                assertEquals((byte) (position + i), destination.get(i));
+            }
+            position += read;
+        }
+        writer.join();
+        assertEquals(total, ringBuffer.getStats().capturedBytes());
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.observant_sun.rattlegram.encoding;
+
+import com.github.observant_sun.rattlegram.entity.DecoderEvent;
+import com.github.observant_sun.rattlegram.entity.DecoderProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceivePipelineTest {
+
+    private static final int FRAME_SIZE = Short.BYTES;
+    private static final int BUFFER_SIZE = 64;
+
+    private final CountDownLatch slowDecodeReleased = new CountDownLatch(1);
+    private final Semaphore fastDecoded = new Semaphore(0);
+    private final PayloadDecodeStage payloadDecodeStage = new PayloadDecodeStage();
+    private final ReceivePipeline slowPipeline = newPipeline(() -> {
+        try {
+            slowDecodeReleased.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    });
+    private final ReceivePipeline fastPipeline = newPipeline(fastDecoded::release);
+
+    private ReceivePipeline newPipeline(Runnable decode) {
+        return new ReceivePipeline(new StubDecoderSession(decode), null, FRAME_SIZE, BUFFER_SIZE, payloadDecodeStage,
+                message -> {}, status -> {});
+    }
+
+    @AfterEach
+    void tearDown() {
+        slowDecodeReleased.countDown();
+        slowPipeline.close();
+        fastPipeline.close();
+    }
+
+    @Test
+    void submit_otherPipelineBehind_notHeldUp() throws InterruptedException {
+        slowPipeline.start("slow-pipeline");
+        fastPipeline.start("fast-pipeline");
+        ByteBuffer audio = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        int accepted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (slowPipeline.submit(audio, BUFFER_SIZE)) {
+                accepted++;
+            }
+            assertTrue(fastPipeline.submit(audio, BUFFER_SIZE));
+            assertTrue(fastDecoded.tryAcquire(1, TimeUnit.SECONDS));
+        }
+
+        // one buffer is being decoded, the others are queued behind it
+        assertEquals(8, accepted);
+        assertEquals(12, slowPipeline.getDroppedReads());
+        assertEquals(0, fastPipeline.getDroppedReads());
+    }
+
+    private record StubDecoderSession(Runnable decode) implements DecoderSession {
+
+        @Override
+        public int decode(ByteBuffer audioBuffer, int sampleCount, Consumer<DecoderEvent> eventConsumer) {
+            return decodeFrontEnd(audioBuffer, sampleCount, eventConsumer);
+        }
+
+        @Override
+        public int decodeFrontEnd(ByteBuffer audioBuffer, int sampleCount, Consumer<DecoderEvent> eventConsumer) {
+            decode.run();
+            return 0;
+        }
+
+        @Override
+        public int spectrum(IntBuffer spectrumPixels, IntBuffer spectrogramPixels, int spectrumTint) {
+            return -1;
+        }
+
+        @Override
+        public DecoderProfile getProfile() {
+            return null;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return 8000;
+        }
+
+        @Override
+        public long getSamplesDecoded() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
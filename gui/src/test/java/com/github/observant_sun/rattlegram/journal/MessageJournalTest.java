@@ -0,0 +1,157 @@
+package com.github.observant_sun.rattlegram.journal;
+
+import com.github.observant_sun.rattlegram.entity.Message;
+import com.github.observant_sun.rattlegram.entity.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageJournalTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 1, 12, 0);
+    // a few hundred records per segment
+    private static final int SEGMENT_SIZE = 16 * 1024;
+
+    @TempDir
+    Path directory;
+
+    private static Message message(int i) {
+        MessageType type = MessageType.values()[i % MessageType.values().length];
+        String body = type == MessageType.ERROR_INCOMING ? null : "message " + i;
+        String decoderResult = type == MessageType.ERROR_INCOMING ? "decoding failed" : null;
+        return new Message("N0CALL", body, decoderResult, START.plusSeconds(i), type, i % 2 == 0 ? null : "1500 Hz");
+    }
+
+    private static List<Message> messages(int from, int to) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            messages.add(message(i));
+        }
+        return messages;
+    }
+
+    private MessageJournal open(int retainedSegments) throws IOException {
+        return MessageJournal.open(directory, SEGMENT_SIZE, retainedSegments, 60_000);
+    }
+
+    @Test
+    void readLast_acrossSegments_newestInOrder() throws IOException {
+        try (MessageJournal journal = open(16)) {
+            for (Message message : messages(0, 1000)) {
+                journal.append(message);
+            }
+            assertEquals(messages(900, 1000), journal.readLast(100));
+            assertEquals(messages(0, 1000), journal.readLast(5000));
+        }
+        assertTrue(countSegments() > 1);
+    }
+
+    @Test
+    void append_rotated_oldSegmentsDeleted() throws IOException {
+        try (MessageJournal journal = open(2)) {
+            for (Message message : messages(0, 2000)) {
+                journal.append(message);
+            }
+            List<Message> retained = journal.readLast(5000);
+            assertEquals(2, countSegments());
+            assertEquals(message(1999), retained.get(retained.size() - 1));
+            assertTrue(retained.size() < 2000);
+        }
+    }
+
+    @Test
+    void open_existing_continuesAfterLastRecord() throws IOException {
+        try (MessageJournal journal = open(16)) {
+            for (Message message : messages(0, 150)) {
+                journal.append(message);
+            }
+        }
+        try (MessageJournal journal = open(16)) {
+            assertEquals(messages(140, 150), journal.readLast(10));
+            for (Message message : messages(150, 200)) {
+                journal.append(message);
+            }
+            assertEquals(messages(0, 200), journal.readLast(200));
+        }
+    }
+
+    @Test
+    void open_tornRecord_endsSegment() throws IOException {
+        try (MessageJournal journal = open(16)) {
+            for (Message message : messages(0, 3)) {
+                journal.append(message);
+            }
+        }
+        Path segment = directory.resolve("0000000000000000.journal");
+        int lastRecord = JournalSegment.HEADER_SIZE;
+        for (int i = 0; i < 2; i++) {
+            lastRecord += JournalSegment.RECORD_OVERHEAD + MessageCodec.encode(message(i)).remaining();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(lastRecord + Integer.BYTES);
+            file.write(file.read() ^ 0xff);
+        }
+        try (MessageJournal journal = open(16)) {
+            assertEquals(messages(0, 2), journal.readLast(10));
+            journal.append(message(3));
+            assertEquals(List.of(message(0), message(1), message(3)), journal.readLast(10));
+        }
+    }
+
+    @Test
+    void open_lostIndex_rebuilt() throws IOException {
+        try (MessageJournal journal = open(16)) {
+            for (Message message : messages(0, 200)) {
+                journal.append(message);
+            }
+        }
+        Files.delete(directory.resolve("0000000000000000.index"));
+        try (MessageJournal journal = open(16)) {
+            assertEquals(messages(190, 200), journal.readLast(10));
+            journal.append(message(200));
+            assertEquals(messages(0, 201), journal.readLast(1000));
+        }
+    }
+
+    @Test
+    void readSince_returnsMessagesFromTimestamp() throws IOException {
+        try (MessageJournal journal = open(16)) {
+            for (Message message : messages(0, 1000)) {
+                journal.append(message);
+            }
+            assertEquals(messages(700, 1000), journal.readSince(START.plusSeconds(700)));
+        }
+    }
+
+    @Test
+    void codec_typeCodesFixed_unknownRejected() {
+        MessageType[] types = {MessageType.NORMAL_INCOMING, MessageType.PING_INCOMING, MessageType.ERROR_INCOMING,
+                MessageType.NORMAL_OUTGOING, MessageType.PING_OUTGOING};
+        for (int code = 0; code < types.length; code++) {
+            Message message = new Message("N0CALL", "body", null, START, types[code], null);
+            ByteBuffer payload = MessageCodec.encode(message);
+            assertEquals(code, payload.get(Long.BYTES));
+            assertEquals(message, MessageCodec.decode(payload));
+        }
+        ByteBuffer payload = MessageCodec.encode(message(0));
+        payload.put(Long.BYTES, (byte) 100);
+        assertThrows(IllegalArgumentException.class, () -> MessageCodec.decode(payload));
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".journal")).count();
+        }
+    }
+}
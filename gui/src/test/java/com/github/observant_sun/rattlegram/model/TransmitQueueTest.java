@@ -0,0 +1,81 @@
+package com.github.observant_sun.rattlegram.model;
+
+import com.github.observant_sun.rattlegram.entity.TransmitQueueStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransmitQueueTest {
+
+    private long now;
+    TransmitQueue<String> queue = new TransmitQueue<>(3, 1000, () -> now);
+
+    @Test
+    void take_operatorMessagesBeforeRepeats() throws InterruptedException {
+        queue.offer("repeat 1", "repeat 1", true, null);
+        queue.offer("operator 1", "operator 1", false, null);
+        queue.offer("repeat 2", "repeat 2", true, null);
+
+        assertEquals("operator 1", queue.take());
+        assertEquals("repeat 1", queue.take());
+        assertEquals("repeat 2", queue.take());
+    }
+
+    @Test
+    void offer_sameRepeatQueued_coalesced() {
+        assertEquals(TransmitQueue.Result.QUEUED, queue.offer("repeat", "key", true, null));
+        assertEquals(TransmitQueue.Result.COALESCED, queue.offer("repeat", "key", true, null));
+
+        TransmitQueueStats stats = queue.getStats();
+        assertEquals(1, stats.depth());
+        assertEquals(1, stats.coalesced());
+    }
+
+    @Test
+    void offer_full_operatorMessageEvictsOldestRepeat() throws InterruptedException {
+        queue.offer("repeat 1", "repeat 1", true, null);
+        queue.offer("repeat 2", "repeat 2", true, null);
+        queue.offer("repeat 3", "repeat 3", true, null);
+
+        assertEquals(TransmitQueue.Result.DROPPED, queue.offer("repeat 4", "repeat 4", true, null));
+        assertEquals(TransmitQueue.Result.QUEUED, queue.offer("operator", "operator", false, null));
+
+        assertEquals("operator", queue.take());
+        assertEquals("repeat 2", queue.take());
+        assertEquals("repeat 3", queue.take());
+        assertEquals(2, queue.getStats().dropped());
+    }
+
+    @Test
+    void offer_fullOfOperatorMessages_dropped() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(TransmitQueue.Result.QUEUED, queue.offer("operator " + i, "operator " + i, false, null));
+        }
+        assertEquals(TransmitQueue.Result.DROPPED, queue.offer("operator 3", "operator 3", false, null));
+    }
+
+    @Test
+    void take_staleRepeat_expired() throws InterruptedException {
+        queue.offer("repeat", "repeat", true, null);
+        queue.offer("operator", "operator", false, null);
+        now += TimeUnit.SECONDS.toNanos(2);
+
+        assertEquals("operator", queue.take());
+        TransmitQueueStats stats = queue.getStats();
+        assertEquals(0, stats.depth());
+        assertEquals(1, stats.expired());
+        assertEquals(2000, stats.maxWaitMillis());
+    }
+
+    @Test
+    void take_delayed_readyOneFirst() throws InterruptedException {
+        queue.offer("delayed", "delayed", false, 500);
+        queue.offer("repeat", "repeat", true, null);
+
+        assertEquals("repeat", queue.take());
+        now += TimeUnit.MILLISECONDS.toNanos(500);
+        assertEquals("delayed", queue.take());
+    }
+}
@@ -0,0 +1,249 @@
+/*
+Benchmarks of the DSP and FEC kernels and of the encoder and decoder stages
+
+Prints ns per operation and, where an operation covers a known number of
+audio samples, samples per second and the multiple of real time.
+
+Usage: rattlegram-benchmark [milliseconds per benchmark]
+*/
+
+#include <chrono>
+#include <cstdint>
+#include <cstdio>
+#include <cstdlib>
+#include <vector>
+#define assert(expr) do {} while (0)
+#include "encoder.hh"
+#include "decoder.hh"
+
+static int min_millis = 500;
+static volatile int sink;
+
+// the soft bits of a frame as the decoder front end delivers them, captured at 8000 Hz
+static int8_t frame_code[CODE_LENGTH];
+static int frame_mode;
+
+static const std::initializer_list<int> bch_minimal_polynomials = {
+	0b100011101, 0b101110111, 0b111110011, 0b101101001,
+	0b110111101, 0b111100111, 0b100101011, 0b111010111,
+	0b000010011, 0b101100101, 0b110001011, 0b101100011,
+	0b100011011, 0b100111111, 0b110001101, 0b100101101,
+	0b101011111, 0b111111001, 0b111000011, 0b100111001,
+	0b110101001, 0b000011111, 0b110000111, 0b110110001};
+
+// doubles the number of iterations until a run takes at least min_millis
+template <typename FUNC>
+static void measure(const char *name, int rate, long samples_per_op, FUNC func)
+{
+	typedef std::chrono::steady_clock clock;
+	func();
+	long iterations = 1;
+	double nanos;
+	while (true) {
+		auto start = clock::now();
+		for (long i = 0; i < iterations; ++i)
+			func();
+		nanos = std::chrono::duration<double, std::nano>(clock::now() - start).count();
+		if (nanos >= min_millis * 1e6)
+			break;
+		iterations *= 2;
+	}
+	double ns_per_op = nanos / iterations;
+	if (rate > 0)
+		std::printf("%-28s %6d %14.0f", name, rate, ns_per_op);
+	else
+		std::printf("%-28s %6s %14.0f", name, "-", ns_per_op);
+	if (samples_per_op > 0) {
+		double samples_per_second = samples_per_op * 1e9 / ns_per_op;
+		std::printf(" %14.0f %10.1f", samples_per_second, samples_per_second / rate);
+	}
+	std::printf("\n");
+}
+
+static void fill_payload(uint8_t *payload, int8_t *call_sign)
+{
+	const char *message = "CQ CQ CQ de N0CALL, rattlegram benchmark frame";
+	std::memset(payload, 0, 170);
+	std::memcpy(payload, message, std::strlen(message));
+	std::memset(call_sign, 0, 10);
+	std::memcpy(call_sign, "N0CALL", 6);
+}
+
+template <int RATE>
+static void bench_rate()
+{
+	typedef DSP::Complex<float> cmplx;
+	static const int symbol_length = (1280 * RATE) / 8000;
+	static const int guard_length = symbol_length / 8;
+	static const int extended_length = symbol_length + guard_length;
+	static const int filter_length = (((33 * RATE) / 8000) & ~3) | 1;
+	static const int buffer_length = 4 * extended_length;
+	static const int search_position = extended_length;
+	static const int read_samples = RATE / 50;
+
+	uint8_t payload[170];
+	int8_t call_sign[10];
+	fill_payload(payload, call_sign);
+
+	auto encoder = new Encoder<RATE>();
+	encoder->configure(payload, call_sign, 1500, 0, false);
+	int frame_length = encoder->frame_length();
+	std::vector<uint8_t> frame(2 * frame_length);
+	encoder->render(frame.data(), 0, frame_length);
+	measure("encoder.configure", RATE, 0, [&]() {
+		encoder->configure(payload, call_sign, 1500, 0, false);
+	});
+	measure("encoder.render", RATE, frame_length, [&]() {
+		encoder->configure(payload, call_sign, 1500, 0, false);
+		sink = encoder->render(frame.data(), 0, frame_length);
+	});
+	delete encoder;
+
+	// one second of silence on both sides of the frame
+	std::vector<uint8_t> recording(2 * (RATE + frame_length + RATE));
+	std::memcpy(recording.data() + 2 * RATE, frame.data(), frame.size());
+	int recording_length = recording.size() / 2;
+
+	std::vector<cmplx> analytic(recording_length);
+	{
+		DSP::BlockDC<float, float> block_dc;
+		DSP::Hilbert<cmplx, filter_length> hilbert;
+		block_dc.samples(filter_length);
+		for (int i = 0; i < recording_length; ++i)
+			analytic[i] = hilbert(block_dc(int16_t(recording[2 * i] | recording[2 * i + 1] << 8) / 32768.f));
+	}
+
+	auto fwd = new DSP::FastFourierTransform<symbol_length, cmplx, -1>();
+	std::vector<cmplx> freq(symbol_length);
+	measure("fft", RATE, symbol_length, [&]() {
+		fwd->operator()(freq.data(), analytic.data() + RATE);
+	});
+	delete fwd;
+
+	{
+		cmplx sequence[symbol_length / 2] = {};
+		CODE::MLS seq(0b10001001);
+		for (int i = 0; i < 127; ++i)
+			sequence[(i + (1 - 127) / 2 + symbol_length / 2) % (symbol_length / 2)] = 1 - 2 * seq();
+		auto correlator = new SchmidlCox<float, cmplx, search_position, symbol_length / 2, guard_length>(sequence);
+		auto buffer = new DSP::BipBuffer<cmplx, buffer_length>();
+		measure("schmidl_cox", RATE, recording_length, [&]() {
+			int found = 0;
+			for (int i = 0; i < recording_length; ++i)
+				found += correlator->operator()(buffer->operator()(analytic[i]));
+			sink = found;
+		});
+		delete buffer;
+		delete correlator;
+	}
+
+	{
+		auto improve_papr = new ImprovePAPR<cmplx, symbol_length, (32000 + RATE / 2) / RATE>();
+		CODE::Xorshift32 random;
+		std::vector<cmplx> carriers(symbol_length), work(symbol_length);
+		for (int i = -128; i < 128; ++i)
+			carriers[(i + symbol_length) % symbol_length] = cmplx(random() & 1 ? 1 : -1, random() & 1 ? 1 : -1);
+		measure("papr", RATE, symbol_length, [&]() {
+			work = carriers;
+			improve_papr->operator()(work.data());
+		});
+		delete improve_papr;
+	}
+
+	std::vector<DecoderEvent> events(recording_length / extended_length + 1);
+	std::vector<uint8_t> payloads(170 * events.size());
+	std::vector<int8_t> codes(CODE_LENGTH * events.size());
+	auto decode = [&](DecoderInterface *decoder, int8_t *codes) {
+		int count = 0;
+		for (int offset = 0; offset + read_samples <= recording_length; offset += read_samples)
+			count += decoder->decode(recording.data() + 2 * offset, read_samples, 0, events.data() + count,
+				events.size() - count, payloads.data(), codes);
+		return count;
+	};
+	auto decoder = new Decoder<RATE>();
+	measure("decoder.decode", RATE, recording_length, [&]() {
+		sink = decode(decoder, nullptr);
+	});
+	measure("decoder.decode_front_end", RATE, recording_length, [&]() {
+		sink = decode(decoder, codes.data());
+	});
+	delete decoder;
+
+	if (RATE == 8000) {
+		decoder = new Decoder<RATE>();
+		int count = decode(decoder, codes.data());
+		for (int i = 0; i < count; ++i) {
+			if (events[i].status == STATUS_DONE) {
+				std::memcpy(frame_code, codes.data() + events[i].code_offset, CODE_LENGTH);
+				frame_mode = events[i].mode;
+			}
+		}
+		delete decoder;
+	}
+}
+
+static void bench_fec()
+{
+	if (frame_mode) {
+		uint8_t payload[170];
+		auto payload_decoder = new PayloadDecoder();
+		measure("payload_decoder", 0, 0, [&]() {
+			sink = payload_decoder->operator()(payload, frame_code, frame_mode);
+		});
+		delete payload_decoder;
+	}
+
+	static const int pre_seq_len = 255;
+	auto bch = new CODE::BoseChaudhuriHocquenghemEncoder<255, 71>(bch_minimal_polynomials);
+	auto osd = new CODE::OrderedStatisticsDecoder<255, 71, 2>();
+	auto generator = new int8_t[255 * 71];
+	CODE::BoseChaudhuriHocquenghemGenerator<255, 71>::matrix(generator, true, bch_minimal_polynomials);
+
+	uint8_t data[9] = {0}, parity[23] = {0}, hard[(pre_seq_len + 7) / 8];
+	CODE::Xorshift32 random;
+	for (int i = 0; i < 71; ++i)
+		CODE::set_be_bit(data, i, random() & 1);
+	bch->operator()(data, parity);
+	// a few weak and wrong bits, as from a noisy preamble
+	int8_t soft[pre_seq_len];
+	for (int i = 0; i < pre_seq_len; ++i) {
+		bool bit = i < 71 ? CODE::get_be_bit(data, i) : CODE::get_be_bit(parity, i - 71);
+		int amplitude = 8 + random() % 24;
+		if (random() % 32 == 0)
+			amplitude = -amplitude;
+		soft[i] = (1 - 2 * bit) * amplitude;
+	}
+	measure("osd", 0, 0, [&]() {
+		sink = osd->operator()(hard, soft, generator);
+	});
+	delete[] generator;
+	delete osd;
+	delete bch;
+
+	static const int pay_car_cnt = 256;
+	auto tse = new DSP::TheilSenEstimator<float, pay_car_cnt>();
+	float index[pay_car_cnt], phase[pay_car_cnt];
+	for (int i = 0; i < pay_car_cnt; ++i) {
+		index[i] = i - pay_car_cnt / 2;
+		phase[i] = 0.001f * index[i] + 0.01f * (int(random() % 200) - 100) / 100.f;
+	}
+	measure("theil_sen", 0, 0, [&]() {
+		tse->compute(index, phase, pay_car_cnt);
+		sink = tse->slope() > 0;
+	});
+	delete tse;
+}
+
+int main(int argc, char **argv)
+{
+	if (argc > 1)
+		min_millis = std::max(1, std::atoi(argv[1]));
+	std::printf("%-28s %6s %14s %14s %10s\n", "benchmark", "rate", "ns/op", "samples/s", "real time");
+	bench_rate<8000>();
+	bench_rate<16000>();
+	bench_rate<32000>();
+	bench_rate<44100>();
+	bench_rate<48000>();
+	bench_fec();
+	return 0;
+}
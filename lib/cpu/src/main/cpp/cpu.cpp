@@ -0,0 +1,26 @@
+/*
+CPU feature probe, picks the variant of the native library to load
+
+Must not be built with instruction set flags beyond the baseline.
+*/
+
+#include <jni.h>
+
+#define FEATURE_SSE4_1 1
+#define FEATURE_AVX2 2
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_github_observant_1sun_rattlegram_encoding_NativeLibrary_cpuFeatures(
+	JNIEnv *,
+	jclass) {
+	int features = 0;
+#if defined(__x86_64__) || defined(__i386__)
+	__builtin_cpu_init();
+	if (__builtin_cpu_supports("sse4.1"))
+		features |= FEATURE_SSE4_1;
+	// also checks that the operating system saves the AVX registers
+	if (__builtin_cpu_supports("avx2") && __builtin_cpu_supports("fma"))
+		features |= FEATURE_AVX2;
+#endif
+	return features;
+}
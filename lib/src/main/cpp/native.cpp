@@ -47,23 +47,31 @@ Java_com_github_observant_1sun_rattlegram_encoding_EncoderImpl_destroyEncoder(
 	delete encoder;
 }
 
-extern "C" JNIEXPORT jboolean JNICALL
-Java_com_github_observant_1sun_rattlegram_encoding_EncoderImpl_produceEncoder(
+extern "C" JNIEXPORT jint JNICALL
+Java_com_github_observant_1sun_rattlegram_encoding_EncoderImpl_frameLengthEncoder(
+	JNIEnv *,
+	jobject,
+	jlong encoderHandle) {
+	EncoderInterface* encoder = reinterpret_cast<EncoderInterface*>(encoderHandle);
+	if (!encoder)
+		return 0;
+	return encoder->frame_length();
+}
+
+extern "C" JNIEXPORT jint JNICALL
+Java_com_github_observant_1sun_rattlegram_encoding_EncoderImpl_renderEncoder(
 	JNIEnv *env,
 	jobject,
 	jlong encoderHandle,
-	jshortArray JNI_audioBuffer,
+	jobject JNI_frameBuffer,
 	jint channelSelect) {
 	EncoderInterface* encoder = reinterpret_cast<EncoderInterface*>(encoderHandle);
-	if (!encoder)
-		return false;
-
-	jshort *audioBuffer = env->GetShortArrayElements(JNI_audioBuffer, nullptr);
-	jboolean okay = false;
-	if (audioBuffer)
-		okay = encoder->produce(audioBuffer, channelSelect);
-	env->ReleaseShortArrayElements(JNI_audioBuffer, audioBuffer, 0);
-	return okay;
+	void *frameBuffer = env->GetDirectBufferAddress(JNI_frameBuffer);
+	if (!encoder || !frameBuffer)
+		return 0;
+	int bytesPerSample = channelSelect ? 4 : 2;
+	int maxSamples = env->GetDirectBufferCapacity(JNI_frameBuffer) / bytesPerSample;
+	return encoder->render(reinterpret_cast<uint8_t *>(frameBuffer), channelSelect, maxSamples);
 }
 
 extern "C" JNIEXPORT void JNICALL
@@ -102,7 +110,7 @@ Java_com_github_observant_1sun_rattlegram_encoding_EncoderImpl_configureEncoder(
 }
 
 extern "C" JNIEXPORT void JNICALL
-Java_com_github_observant_1sun_rattlegram_encoding_DecoderImpl_destroyDecoder(
+Java_com_github_observant_1sun_rattlegram_encoding_DecoderSessionImpl_destroyDecoder(
 	JNIEnv *,
 	jobject,
 	jlong decoderHandle) {
@@ -113,7 +121,7 @@ Java_com_github_observant_1sun_rattlegram_encoding_DecoderImpl_destroyDecoder(
 }
 
 extern "C" JNIEXPORT jlong JNICALL
-Java_com_github_observant_1sun_rattlegram_encoding_DecoderImpl_createNewDecoder(
+Java_com_github_observant_1sun_rattlegram_encoding_DecoderSessionImpl_createNewDecoder(
 	JNIEnv *,
 	jobject,
 	jint sampleRate) {
@@ -140,135 +148,162 @@ Java_com_github_observant_1sun_rattlegram_encoding_DecoderImpl_createNewDecoder(
 	return reinterpret_cast<jlong>(decoder);
 }
 
-extern "C" JNIEXPORT jint JNICALL
-Java_com_github_observant_1sun_rattlegram_encoding_DecoderImpl_fetchDecoder(
-	JNIEnv *env,
+extern "C" JNIEXPORT void JNICALL
+Java_com_github_observant_1sun_rattlegram_encoding_DecoderSessionImpl_tuneDecoder(
+	JNIEnv *,
 	jobject,
 	jlong decoderHandle,
-	jbyteArray JNI_payload) {
+	jint centerFrequency) {
 	DecoderInterface* decoder = reinterpret_cast<DecoderInterface*>(decoderHandle);
-	jint status = -1;
-	if (decoder) {
-		jbyte *payload = env->GetByteArrayElements(JNI_payload, nullptr);
-		if (payload)
-			status = decoder->fetch(reinterpret_cast<uint8_t *>(payload));
-		env->ReleaseByteArrayElements(JNI_payload, payload, 0);
-	}
-	return status;
+	if (decoder)
+		decoder->tune(centerFrequency);
 }
 
 extern "C" JNIEXPORT void JNICALL
-Java_com_github_observant_1sun_rattlegram_encoding_DecoderImpl_stagedDecoder(
+Java_com_github_observant_1sun_rattlegram_encoding_DecoderSessionImpl_profileDecoder(
 	JNIEnv *env,
 	jobject,
 	jlong decoderHandle,
-	jfloatArray JNI_carrierFrequencyOffset,
-	jintArray JNI_operationMode,
-	jbyteArray JNI_callSign) {
-
+	jlongArray JNI_profile) {
 	DecoderInterface* decoder = reinterpret_cast<DecoderInterface*>(decoderHandle);
-	if (!decoder)
+	if (!decoder || env->GetArrayLength(JNI_profile) < PROFILE_LENGTH)
 		return;
-
-	jint *operationMode;
-	jfloat *carrierFrequencyOffset;
-	jbyte *callSign;
-	carrierFrequencyOffset = env->GetFloatArrayElements(JNI_carrierFrequencyOffset, nullptr);
-	if (!carrierFrequencyOffset)
-		goto carrierFrequencyOffsetFail;
-	operationMode = env->GetIntArrayElements(JNI_operationMode, nullptr);
-	if (!operationMode)
-		goto operationModeFail;
-	callSign = env->GetByteArrayElements(JNI_callSign, nullptr);
-	if (!callSign)
-		goto callSignFail;
-
-	decoder->staged(
-		reinterpret_cast<float *>(carrierFrequencyOffset),
-		reinterpret_cast<int32_t *>(operationMode),
-		reinterpret_cast<uint8_t *>(callSign));
-
-	env->ReleaseByteArrayElements(JNI_callSign, callSign, 0);
-	callSignFail:
-	env->ReleaseIntArrayElements(JNI_operationMode, operationMode, 0);
-	operationModeFail:
-	env->ReleaseFloatArrayElements(JNI_carrierFrequencyOffset, carrierFrequencyOffset, 0);
-	carrierFrequencyOffsetFail:;
+	int64_t values[PROFILE_LENGTH];
+	decoder->profile(values);
+	static_assert(sizeof(jlong) == sizeof(int64_t), "profile values are copied as they are");
+	env->SetLongArrayRegion(JNI_profile, 0, PROFILE_LENGTH, reinterpret_cast<jlong *>(values));
 }
 
-extern "C" JNIEXPORT jboolean JNICALL
-Java_com_github_observant_1sun_rattlegram_encoding_DecoderImpl_feedDecoder(
+extern "C" JNIEXPORT jint JNICALL
+Java_com_github_observant_1sun_rattlegram_encoding_DecoderSessionImpl_batchDecoder(
 	JNIEnv *env,
 	jobject,
 	jlong decoderHandle,
-	jshortArray JNI_audioBuffer,
+	jobject JNI_audioBuffer,
 	jint sampleCount,
-	jint channelSelect) {
+	jint channelSelect,
+	jobject JNI_events,
+	jobject JNI_payloads,
+	jobject JNI_codes) {
 
 	DecoderInterface* decoder = reinterpret_cast<DecoderInterface*>(decoderHandle);
-	jboolean status = false;
-
-	if (!decoder)
-		return status;
 
-	jshort *audioBuffer;
-	audioBuffer = env->GetShortArrayElements(JNI_audioBuffer, nullptr);
-	if (!audioBuffer)
-		goto audioBufferFail;
-
-	status = decoder->feed(
-		reinterpret_cast<int16_t *>(audioBuffer),
-		sampleCount, channelSelect);
+	void *events = env->GetDirectBufferAddress(JNI_events);
+	int maxEvents = env->GetDirectBufferCapacity(JNI_events) / sizeof(DecoderEvent);
+	if (!events || maxEvents < 1)
+		return 0;
+
+	if (!decoder) {
+		DecoderEvent *event = reinterpret_cast<DecoderEvent *>(events);
+		std::memset(event, 0, sizeof(DecoderEvent));
+		event->status = STATUS_HEAP;
+		event->result = -1;
+		event->payload_offset = -1;
+		event->code_offset = -1;
+		return 1;
+	}
 
-	env->ReleaseShortArrayElements(JNI_audioBuffer, audioBuffer, JNI_ABORT);
-	audioBufferFail:
+	void *audioBuffer = env->GetDirectBufferAddress(JNI_audioBuffer);
+	void *payloads = env->GetDirectBufferAddress(JNI_payloads);
+	int maxPayloads = env->GetDirectBufferCapacity(JNI_payloads) / 170;
+	if (!audioBuffer || !payloads)
+		return 0;
+
+	// mono for channel select 0, interleaved stereo otherwise
+	jlong frameSize = channelSelect ? 4 : 2;
+	if (sampleCount < 0 || env->GetDirectBufferCapacity(JNI_audioBuffer) < sampleCount * frameSize)
+		return 0;
+
+	void *codes = nullptr;
+	if (JNI_codes) {
+		codes = env->GetDirectBufferAddress(JNI_codes);
+		maxPayloads = std::min<int>(maxPayloads, env->GetDirectBufferCapacity(JNI_codes) / CODE_LENGTH);
+		if (!codes)
+			return 0;
+	}
 
-	return status;
+	return decoder->decode(
+		reinterpret_cast<uint8_t *>(audioBuffer),
+		sampleCount, channelSelect,
+		reinterpret_cast<DecoderEvent *>(events),
+		std::min(maxEvents, maxPayloads),
+		reinterpret_cast<uint8_t *>(payloads),
+		reinterpret_cast<int8_t *>(codes));
 }
 
 extern "C" JNIEXPORT jint JNICALL
-Java_com_github_observant_1sun_rattlegram_encoding_DecoderImpl_processDecoder(
-	JNIEnv *,
-	jobject,
-	jlong decoderHandle) {
-	DecoderInterface* decoder = reinterpret_cast<DecoderInterface*>(decoderHandle);
-
-	if (!decoder)
-		return STATUS_HEAP;
-
-	return decoder->process();
-}
-
-extern "C" JNIEXPORT void JNICALL
-Java_com_github_observant_1sun_rattlegram_encoding_DecoderImpl_spectrumDecoder(
+Java_com_github_observant_1sun_rattlegram_encoding_DecoderSessionImpl_spectrumDecoder(
 	JNIEnv *env,
 	jobject,
 	jlong decoderHandle,
-	jintArray JNI_spectrumPixels,
-	jintArray JNI_spectrogramPixels,
+	jobject JNI_spectrumPixels,
+	jobject JNI_spectrogramPixels,
 	jint spectrumTint) {
 
 	DecoderInterface* decoder = reinterpret_cast<DecoderInterface*>(decoderHandle);
 
 	if (!decoder)
-		return;
+		return -1;
 
-	jint *spectrumPixels, *spectrogramPixels;
-	spectrumPixels = env->GetIntArrayElements(JNI_spectrumPixels, nullptr);
-	if (!spectrumPixels)
-		goto spectrumFail;
-	spectrogramPixels = env->GetIntArrayElements(JNI_spectrogramPixels, nullptr);
-	if (!spectrogramPixels)
-		goto spectrogramFail;
+	void *spectrumPixels = env->GetDirectBufferAddress(JNI_spectrumPixels);
+	void *spectrogramPixels = env->GetDirectBufferAddress(JNI_spectrogramPixels);
+	if (!spectrumPixels || !spectrogramPixels)
+		return -1;
 
-	decoder->spectrum(
+	return decoder->spectrum(
 		reinterpret_cast<uint32_t *>(spectrumPixels),
 		reinterpret_cast<uint32_t *>(spectrogramPixels),
 		spectrumTint);
+}
+
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_github_observant_1sun_rattlegram_encoding_PayloadDecoderImpl_createPayloadDecoder(
+	JNIEnv *,
+	jobject) {
+	return reinterpret_cast<jlong>(new(std::nothrow) PayloadDecoder());
+}
 
-	env->ReleaseIntArrayElements(JNI_spectrogramPixels, spectrogramPixels, 0);
-	spectrogramFail:
-	env->ReleaseIntArrayElements(JNI_spectrumPixels, spectrumPixels, 0);
-	spectrumFail:;
+extern "C" JNIEXPORT void JNICALL
+Java_com_github_observant_1sun_rattlegram_encoding_PayloadDecoderImpl_destroyPayloadDecoder(
+	JNIEnv *,
+	jobject,
+	jlong payloadDecoderHandle) {
+	delete reinterpret_cast<PayloadDecoder *>(payloadDecoderHandle);
 }
 
+extern "C" JNIEXPORT jint JNICALL
+Java_com_github_observant_1sun_rattlegram_encoding_PayloadDecoderImpl_decodePayload(
+	JNIEnv *env,
+	jobject,
+	jlong payloadDecoderHandle,
+	jobject JNI_code,
+	jint operationMode,
+	jobject JNI_payload) {
+
+	PayloadDecoder *payloadDecoder = reinterpret_cast<PayloadDecoder *>(payloadDecoderHandle);
+	void *code = env->GetDirectBufferAddress(JNI_code);
+	void *payload = env->GetDirectBufferAddress(JNI_payload);
+	if (!payloadDecoder || !code || !payload
+		|| env->GetDirectBufferCapacity(JNI_code) < CODE_LENGTH
+		|| env->GetDirectBufferCapacity(JNI_payload) < 170)
+		return -1;
+
+	return (*payloadDecoder)(
+		reinterpret_cast<uint8_t *>(payload),
+		reinterpret_cast<const int8_t *>(code),
+		operationMode);
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_github_observant_1sun_rattlegram_encoding_PayloadDecoderImpl_profilePayloadDecoder(
+	JNIEnv *env,
+	jobject,
+	jlong payloadDecoderHandle,
+	jlongArray JNI_profile) {
+	PayloadDecoder *payloadDecoder = reinterpret_cast<PayloadDecoder *>(payloadDecoderHandle);
+	if (!payloadDecoder || env->GetArrayLength(JNI_profile) < PROFILE_LENGTH)
+		return;
+	int64_t values[PROFILE_LENGTH];
+	payloadDecoder->profile(values);
+	env->SetLongArrayRegion(JNI_profile, 0, PROFILE_LENGTH, reinterpret_cast<jlong *>(values));
+}
@@ -0,0 +1,60 @@
+/*
+Complex band-pass filter turning a real signal into the analytic signal of one band
+
+Copyright 2026 rattlegram-desktop authors
+*/
+
+#pragma once
+
+#include "window.hh"
+#include "filter.hh"
+
+namespace DSP {
+
+template <typename TYPE, int TAPS>
+class ComplexBandPass
+{
+	typedef TYPE complex_type;
+	typedef typename TYPE::value_type value_type;
+	value_type re[TAPS], im[TAPS];
+	value_type hist[2 * TAPS];
+	int pos = 0;
+public:
+	ComplexBandPass()
+	{
+		for (int i = 0; i < TAPS; ++i)
+			re[i] = im[i] = 0;
+		for (int i = 0; i < 2 * TAPS; ++i)
+			hist[i] = 0;
+	}
+	// center and half_width are fractions of the sample rate
+	void setup(value_type center, value_type half_width)
+	{
+		Kaiser<value_type> win(value_type(2));
+		LowPass<value_type> low(half_width);
+		for (int i = 0; i < TAPS; ++i) {
+			value_type x = value_type(i) - value_type(0.5) * value_type(TAPS - 1);
+			value_type a = Const<value_type>::TwoPi() * center * x;
+			// only positive frequencies pass, so the output has to be doubled to match the Hilbert transform
+			value_type h = value_type(2) * low(i, TAPS) * win(i, TAPS);
+			// reversed, so that the newest sample meets the first tap
+			re[TAPS - 1 - i] = h * cos(a);
+			im[TAPS - 1 - i] = h * sin(a);
+		}
+	}
+	complex_type operator()(value_type input)
+	{
+		hist[pos] = hist[pos + TAPS] = input;
+		if (++pos == TAPS)
+			pos = 0;
+		const value_type *x = hist + pos;
+		value_type sum_re = 0, sum_im = 0;
+		for (int i = 0; i < TAPS; ++i) {
+			sum_re += re[i] * x[i];
+			sum_im += im[i] * x[i];
+		}
+		return complex_type(sum_re, sum_im);
+	}
+};
+
+}
@@ -6,6 +6,7 @@ Copyright 2022 Ahmet Inan <inan@aicodix.de>
 
 #pragma once
 
+#include <atomic>
 #include <cstring>
 #include <cmath>
 #include <iostream>
@@ -19,6 +20,7 @@ namespace DSP { using std::abs; using std::min; using std::cos; using std::sin;
 #include "decibel.hh"
 #include "complex.hh"
 #include "hilbert.hh"
+#include "complex_band_pass.hh"
 #include "blockdc.hh"
 #include "filter.hh"
 #include "window.hh"
@@ -33,6 +35,7 @@ namespace DSP { using std::abs; using std::min; using std::cos; using std::sin;
 #include "crc.hh"
 #include "osd.hh"
 #include "psk.hh"
+#include "profile.hh"
 
 #define STATUS_OKAY 0
 #define STATUS_FAIL 1
@@ -42,17 +45,96 @@ namespace DSP { using std::abs; using std::min; using std::cos; using std::sin;
 #define STATUS_NOPE 5
 #define STATUS_PING 6
 
+#define CODE_LENGTH 2048
+
+// profiled stages, their order is shared with DecoderStage in Java
+#define STAGE_INPUT 0
+#define STAGE_CORRELATOR 1
+#define STAGE_PREAMBLE 2
+#define STAGE_SYMBOL_FFT 3
+#define STAGE_THEIL_SEN 4
+#define STAGE_POLAR 5
+#define STAGE_COUNT 6
+// count, cumulative and maximum nanoseconds per stage, followed by the bytes of native memory
+#define PROFILE_LENGTH (3 * STAGE_COUNT + 1)
+
+struct DecoderEvent {
+	int32_t status;
+	int32_t sample_offset;
+	float cfo;
+	int32_t mode;
+	int32_t result;
+	int32_t payload_offset;
+	int32_t code_offset;
+	uint8_t call[12];
+};
+
+static_assert(sizeof(DecoderEvent) == 40, "DecoderEvent layout is shared with Java");
+
+class PayloadDecoder {
+	PolarDecoder<int8_t> polar;
+	DSP::StageCounter polar_counter;
+public:
+	// fills in the polar stage and the memory of this instance
+	void profile(int64_t *values) {
+		for (int i = 0; i < PROFILE_LENGTH; ++i)
+			values[i] = 0;
+		polar_counter.snapshot(values + 3 * STAGE_POLAR);
+		values[3 * STAGE_COUNT] = sizeof(*this);
+	}
+
+	int operator()(uint8_t *payload, const int8_t *code, int operation_mode) {
+		const uint32_t *frozen_bits;
+		int data_bits;
+		switch (operation_mode) {
+			case 14:
+				data_bits = 1360;
+				frozen_bits = frozen_2048_1392;
+				break;
+			case 15:
+				data_bits = 1024;
+				frozen_bits = frozen_2048_1056;
+				break;
+			case 16:
+				data_bits = 680;
+				frozen_bits = frozen_2048_712;
+				break;
+			default:
+				return -1;
+		}
+		int result;
+		{
+			DSP::StageTimer timer(polar_counter);
+			result = polar(payload, code, frozen_bits, data_bits);
+		}
+		CODE::Xorshift32 scrambler;
+		for (int i = 0; i < data_bits / 8; ++i)
+			payload[i] ^= scrambler();
+		for (int i = data_bits / 8; i < 170; ++i)
+			payload[i] = 0;
+		return result;
+	}
+};
+
 struct DecoderInterface {
 	virtual bool feed(const int16_t *, int, int) = 0;
 
+	virtual bool feed_pcm(const uint8_t *, int, int) = 0;
+
 	virtual int process() = 0;
 
-	virtual void spectrum(uint32_t *, uint32_t *, int) = 0;
+	virtual int spectrum(uint32_t *, uint32_t *, int) = 0;
 
 	virtual void staged(float *, int32_t *, uint8_t *) = 0;
 
 	virtual int fetch(uint8_t *) = 0;
 
+	virtual int decode(const uint8_t *, int, int, DecoderEvent *, int, uint8_t *, int8_t *) = 0;
+
+	virtual void tune(int) = 0;
+
+	virtual void profile(int64_t *) = 0;
+
 	virtual int rate() = 0;
 
 	virtual ~DecoderInterface() = default;
@@ -68,13 +150,17 @@ class Decoder : public DecoderInterface {
 	static const int code_order = 11;
 	static const int mod_bits = 2;
 	static const int code_len = 1 << code_order;
+	static_assert(code_len == CODE_LENGTH, "snapshots of the soft bits are handed to PayloadDecoder");
 	static const int symbol_count = 4;
 	static const int symbol_length = (1280 * RATE) / 8000;
 	static const int guard_length = symbol_length / 8;
 	static const int extended_length = symbol_length + guard_length;
 	static const int filter_length = (((33 * RATE) / 8000) & ~3) | 1;
+	static const int band_pass_length = ((102 * RATE) / 8000) | 1;
+	static const int band_half_width = 950;
 	static const int stft_length = extended_length / 2;
 	static const int window_length = 2 * stft_length;
+	static const int snapshot_length = window_length + stft_length;
 	static const int dB_min = -96, dB_max = 0;
 	static const int cor_seq_len = 127;
 	static const int cor_seq_off = 1 - cor_seq_len;
@@ -91,6 +177,8 @@ class Decoder : public DecoderInterface {
 	SchmidlCox<float, cmplx, search_position, symbol_length / 2, guard_length> correlator;
 	DSP::BlockDC<float, float> block_dc;
 	DSP::Hilbert<cmplx, filter_length> hilbert;
+	DSP::ComplexBandPass<cmplx, band_pass_length> band_pass;
+	bool band_limited = false;
 	DSP::BipBuffer<cmplx, buffer_length> buffer;
 	DSP::TheilSenEstimator<float, pay_car_cnt> tse;
 	DSP::Phasor<cmplx> osc;
@@ -99,9 +187,24 @@ class Decoder : public DecoderInterface {
 	DSP::Coeffs<window_length, float, true> window;
 	CODE::CRC<uint16_t> crc;
 	CODE::OrderedStatisticsDecoder<255, 71, 2> osd;
-	PolarDecoder<code_type> polar;
+	PayloadDecoder payload_decoder;
+	DSP::StageCounter counters[STAGE_COUNT];
 	cmplx temp[extended_length], freq[symbol_length], prev[pay_car_cnt], cons[pay_car_cnt];
+	cmplx input[extended_length];
+	float real[extended_length];
 	float power[spectrum_width]{}, index[pay_car_cnt]{}, phase[pay_car_cnt]{};
+	// the spectrum is computed on another thread, from a copy of the latest block and with its own scratch space
+	cmplx snapshot[snapshot_length], spectrum_input[snapshot_length];
+	cmplx spectrum_temp[stft_length], spectrum_freq[stft_length];
+	std::atomic_flag snapshot_busy = ATOMIC_FLAG_INIT;
+	bool snapshot_fresh = false;
+	// a tuned decoder only sees its own band, the spectrum is taken from the unfiltered signal kept here instead,
+	// once it has been asked for, so tuned decoders that are never shown do not pay for it
+	std::atomic<bool> wideband_spectrum{false};
+	cmplx wideband[snapshot_length];
+	int wideband_position = 0;
+	// the spectrogram is a ring of rows, the newest one at the head and older ones below it
+	int spectrogram_head = 0;
 	code_type code[code_len];
 	int8_t generator[255 * 71];
 	int8_t soft[pre_seq_len];
@@ -115,7 +218,10 @@ class Decoder : public DecoderInterface {
 	int accumulated = 0;
 	float stored_cfo_rad = 0;
 	float staged_cfo_rad = 0;
+	float synced_cfo = 0;
+	int32_t synced_mode = 0;
 	uint64_t staged_call = 0;
+	uint8_t synced_call[9] = {0};
 	bool stored_check = false;
 	bool staged_check = false;
 	const cmplx *buf;
@@ -188,6 +294,14 @@ class Decoder : public DecoderInterface {
 	}
 
 	cmplx analytic(float real) {
+		if (band_limited) {
+			if (wideband_spectrum.load(std::memory_order_relaxed)) {
+				wideband[wideband_position] = hilbert(block_dc(real));
+				if (++wideband_position == snapshot_length)
+					wideband_position = 0;
+			}
+			return band_pass(real);
+		}
 		return hilbert(block_dc(real));
 	}
 
@@ -205,6 +319,76 @@ class Decoder : public DecoderInterface {
 		return analytic(samples[i] / 32768.f);
 	}
 
+	static float le16(const uint8_t *bytes) {
+		return (int16_t) (bytes[0] | (bytes[1] << 8));
+	}
+
+	void unpack(const uint8_t *pcm, int channel, int count) {
+		switch (channel) {
+			case 1:
+				for (int i = 0; i < count; ++i)
+					real[i] = le16(pcm + 4 * i) / 32768.f;
+				break;
+			case 2:
+				for (int i = 0; i < count; ++i)
+					real[i] = le16(pcm + 4 * i + 2) / 32768.f;
+				break;
+			case 3:
+				for (int i = 0; i < count; ++i)
+					real[i] = (le16(pcm + 4 * i) + le16(pcm + 4 * i + 2)) / 65536.f;
+				break;
+			case 4:
+				for (int i = 0; i < count; ++i)
+					input[i] = cmplx(le16(pcm + 4 * i), le16(pcm + 4 * i + 2)) / 32768.f;
+				return;
+			default:
+				for (int i = 0; i < count; ++i)
+					real[i] = le16(pcm + 2 * i) / 32768.f;
+		}
+		for (int i = 0; i < count; ++i)
+			input[i] = analytic(real[i]);
+	}
+
+	bool push(int sample_count) {
+		for (int i = 0; i < sample_count; ++i) {
+			if (correlator(buffer(input[i]))) {
+				stored_cfo_rad = correlator.cfo_rad;
+				stored_position = correlator.symbol_pos + accumulated;
+				stored_check = true;
+			}
+			if (++accumulated == extended_length) {
+				buf = buffer();
+				take_snapshot();
+			}
+		}
+		if (accumulated >= extended_length) {
+			accumulated -= extended_length;
+			if (stored_check) {
+				staged_cfo_rad = stored_cfo_rad;
+				staged_position = stored_position;
+				staged_check = true;
+				stored_check = false;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	// never waits for the spectrum thread, if it is copying the previous snapshot this block is left out
+	void take_snapshot() {
+		if (snapshot_busy.test_and_set(std::memory_order_acquire))
+			return;
+		if (band_limited) {
+			int tail = snapshot_length - wideband_position;
+			std::memcpy(snapshot, wideband + wideband_position, tail * sizeof(cmplx));
+			std::memcpy(snapshot + tail, wideband, wideband_position * sizeof(cmplx));
+		} else {
+			std::memcpy(snapshot, buf + buffer_length - snapshot_length, sizeof(snapshot));
+		}
+		snapshot_fresh = true;
+		snapshot_busy.clear(std::memory_order_release);
+	}
+
 	void update_spectrum(uint32_t *pixels, uint32_t tint) {
 		Image<uint32_t, spectrum_width, spectrum_height> img(pixels);
 		img.fill(0);
@@ -217,9 +401,10 @@ class Decoder : public DecoderInterface {
 	}
 
 	void update_spectrogram(uint32_t *pixels) {
-		std::memmove(pixels + spectrogram_width, pixels, sizeof(uint32_t) * spectrogram_width * (spectrogram_height - 1));
+		spectrogram_head = (spectrogram_head + spectrogram_height - 1) % spectrogram_height;
+		uint32_t *row = pixels + spectrogram_width * spectrogram_head;
 		for (int i = 0; i < spectrogram_width; ++i)
-			pixels[i] = rainbow(power[i]);
+			row[i] = rainbow(power[i]);
 	}
 
 	void compensate() {
@@ -234,7 +419,10 @@ class Decoder : public DecoderInterface {
 				++count;
 			}
 		}
-		tse.compute(index, phase, count);
+		{
+			DSP::StageTimer timer(counters[STAGE_THEIL_SEN]);
+			tse.compute(index, phase, count);
+		}
 		for (int i = 0; i < pay_car_cnt; ++i)
 			cons[i] *= DSP::polar<float>(1, -tse(i + pay_car_off));
 	}
@@ -306,10 +494,24 @@ public:
 		osc.omega(-2000, RATE);
 	}
 
+	void tune(int center_frequency) final {
+		band_limited = center_frequency > 0;
+		if (band_limited)
+			band_pass.setup(float(center_frequency) / RATE, float(band_half_width) / RATE);
+	}
+
 	int rate() final {
 		return RATE;
 	}
 
+	void profile(int64_t *values) final {
+		payload_decoder.profile(values);
+		for (int i = 0; i < STAGE_COUNT; ++i)
+			if (i != STAGE_POLAR)
+				counters[i].snapshot(values + 3 * i);
+		values[3 * STAGE_COUNT] = sizeof(*this);
+	}
+
 	void staged(float *cfo, int32_t *mode, uint8_t *call) final {
 		*cfo = staged_cfo_rad * (RATE / Const::TwoPi());
 		*mode = staged_mode;
@@ -317,62 +519,38 @@ public:
 	}
 
 	int fetch(uint8_t *payload) final {
-		const uint32_t *frozen_bits;
-		int data_bits;
-		switch (operation_mode) {
-			case 14:
-				data_bits = 1360;
-				frozen_bits = frozen_2048_1392;
-				break;
-			case 15:
-				data_bits = 1024;
-				frozen_bits = frozen_2048_1056;
-				break;
-			case 16:
-				data_bits = 680;
-				frozen_bits = frozen_2048_712;
-				break;
-			default:
-				return -1;
-		}
-		int result = polar(payload, code, frozen_bits, data_bits);
-		CODE::Xorshift32 scrambler;
-		for (int i = 0; i < data_bits / 8; ++i)
-			payload[i] ^= scrambler();
-		for (int i = data_bits / 8; i < 170; ++i)
-			payload[i] = 0;
-		return result;
+		return payload_decoder(payload, code, operation_mode);
 	}
 
 	bool feed(const int16_t *audio_buffer, int sample_count, int channel_select) final {
 		assert(sample_count <= extended_length);
-		for (int i = 0; i < sample_count; ++i) {
-			if (correlator(buffer(convert(audio_buffer, channel_select, i)))) {
-				stored_cfo_rad = correlator.cfo_rad;
-				stored_position = correlator.symbol_pos + accumulated;
-				stored_check = true;
-			}
-			if (++accumulated == extended_length)
-				buf = buffer();
+		{
+			DSP::StageTimer timer(counters[STAGE_INPUT]);
+			for (int i = 0; i < sample_count; ++i)
+				input[i] = convert(audio_buffer, channel_select, i);
 		}
-		if (accumulated >= extended_length) {
-			accumulated -= extended_length;
-			if (stored_check) {
-				staged_cfo_rad = stored_cfo_rad;
-				staged_position = stored_position;
-				staged_check = true;
-				stored_check = false;
-			}
-			return true;
+		DSP::StageTimer timer(counters[STAGE_CORRELATOR]);
+		return push(sample_count);
+	}
+
+	bool feed_pcm(const uint8_t *pcm, int sample_count, int channel_select) final {
+		assert(sample_count <= extended_length);
+		{
+			DSP::StageTimer timer(counters[STAGE_INPUT]);
+			unpack(pcm, channel_select, sample_count);
 		}
-		return false;
+		DSP::StageTimer timer(counters[STAGE_CORRELATOR]);
+		return push(sample_count);
 	}
 
 	int process() final {
 		int status = STATUS_OKAY;
 		if (staged_check) {
 			staged_check = false;
-			status = preamble();
+			{
+				DSP::StageTimer timer(counters[STAGE_PREAMBLE]);
+				status = preamble();
+			}
 			if (status == STATUS_OKAY) {
 				operation_mode = staged_mode;
 				osc.omega(-staged_cfo_rad);
@@ -382,9 +560,12 @@ public:
 			}
 		}
 		if (symbol_number < symbol_count) {
-			for (int i = 0; i < extended_length; ++i)
-				temp[i] = buf[symbol_position + i] * osc();
-			fwd(freq, temp);
+			{
+				DSP::StageTimer timer(counters[STAGE_SYMBOL_FFT]);
+				for (int i = 0; i < extended_length; ++i)
+					temp[i] = buf[symbol_position + i] * osc();
+				fwd(freq, temp);
+			}
 			if (symbol_number >= 0) {
 				for (int i = 0; i < pay_car_cnt; ++i)
 					cons[i] = demod_or_erase(freq[bin(i + pay_car_off)], prev[i]);
@@ -399,17 +580,76 @@ public:
 		return status;
 	}
 
-	void spectrum(uint32_t *spectrum_pixels, uint32_t *spectrogram_pixels, int spectrum_tint) final {
+	// without a codes buffer the payload is decoded right away, otherwise only the soft bits are copied out;
+	// every completed block produces an event, returns -1 without consuming anything if they might not all fit
+	int decode(const uint8_t *pcm, int sample_count, int channel_select, DecoderEvent *events, int max_events, uint8_t *payloads, int8_t *codes) final {
+		if ((accumulated + sample_count) / extended_length > max_events)
+			return -1;
+		int bytes_per_sample = channel_select ? 4 : 2;
+		int count = 0, payload_count = 0;
+		for (int offset = 0; offset < sample_count;) {
+			int chunk = std::min(sample_count - offset, extended_length - accumulated);
+			bool ready = feed_pcm(pcm + bytes_per_sample * offset, chunk, channel_select);
+			offset += chunk;
+			if (!ready)
+				continue;
+			int status = process();
+			DecoderEvent *event = events + count++;
+			std::memset(event, 0, sizeof(DecoderEvent));
+			event->status = status;
+			event->sample_offset = offset;
+			event->result = -1;
+			event->payload_offset = -1;
+			event->code_offset = -1;
+			switch (status) {
+				case STATUS_SYNC:
+					staged(&synced_cfo, &synced_mode, synced_call);
+					// fall through
+				case STATUS_NOPE:
+				case STATUS_PING:
+					staged(&event->cfo, &event->mode, event->call);
+					break;
+				case STATUS_DONE:
+					event->cfo = synced_cfo;
+					event->mode = synced_mode;
+					std::memcpy(event->call, synced_call, sizeof(synced_call));
+					if (codes) {
+						event->code_offset = code_len * payload_count++;
+						std::memcpy(codes + event->code_offset, code, code_len);
+					} else {
+						event->payload_offset = 170 * payload_count++;
+						event->result = fetch(payloads + event->payload_offset);
+					}
+					break;
+			}
+		}
+		return count;
+	}
+
+	// returns the head row of the spectrogram, or -1 without touching the pixels when no block was decoded since the previous call
+	int spectrum(uint32_t *spectrum_pixels, uint32_t *spectrogram_pixels, int spectrum_tint) final {
+		wideband_spectrum.store(true, std::memory_order_relaxed);
+		if (snapshot_busy.test_and_set(std::memory_order_acquire))
+			return -1;
+		bool fresh = snapshot_fresh;
+		if (fresh) {
+			std::memcpy(spectrum_input, snapshot, sizeof(snapshot));
+			snapshot_fresh = false;
+		}
+		snapshot_busy.clear(std::memory_order_release);
+		if (!fresh)
+			return -1;
 		for (int j = 0; j < 2; ++j) {
 			for (int i = 0; i < stft_length; ++i)
-				temp[i] = 0;
+				spectrum_temp[i] = 0;
 			for (int i = 0; i < window_length; ++i)
-				temp[i % stft_length] += window[i] * buf[buffer_length - window_length + stft_length * (j - 1) + i];
-			stft(freq, temp);
+				spectrum_temp[i % stft_length] += window[i] * spectrum_input[stft_length * j + i];
+			stft(spectrum_freq, spectrum_temp);
 			for (int i = 0; i < spectrum_width; ++i)
-				power[i] = std::clamp<float>((DSP::decibel(norm(freq[i])) - dB_min) / (dB_max - dB_min), 0, 1);
+				power[i] = std::clamp<float>((DSP::decibel(norm(spectrum_freq[i])) - dB_min) / (dB_max - dB_min), 0, 1);
 			update_spectrogram(spectrogram_pixels);
 		}
 		update_spectrum(spectrum_pixels, spectrum_tint);
+		return spectrogram_head;
 	}
 };
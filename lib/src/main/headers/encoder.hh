@@ -28,6 +28,10 @@ struct EncoderInterface {
 
 	virtual bool produce(int16_t *, int) = 0;
 
+	virtual int frame_length() = 0;
+
+	virtual int render(uint8_t *, int, int) = 0;
+
 	virtual int rate() = 0;
 
 	virtual ~EncoderInterface() = default;
@@ -72,6 +76,8 @@ class Encoder : public EncoderInterface {
 	int count_down = 0;
 	int fancy_line = 0;
 	int noise_count = 0;
+	int frame_symbols = 0;
+	int16_t samples[2 * extended_length];
 
 	static uint8_t base37_map(int8_t c) {
 		if (c >= '0' && c <= '9')
@@ -218,6 +224,26 @@ public:
 		return RATE;
 	}
 
+	// samples of the configured frame, counting from the first produce() after configure()
+	int frame_length() final {
+		return frame_symbols * extended_length;
+	}
+
+	// produces the rest of the frame as 16-bit little-endian PCM, returns the number of samples written
+	int render(uint8_t *pcm, int channel_select, int max_samples) final {
+		int channels = channel_select ? 2 : 1;
+		int count = 0;
+		while (count + extended_length <= max_samples && produce(samples, channel_select)) {
+			uint8_t *out = pcm + 2 * channels * count;
+			for (int i = 0; i < channels * extended_length; ++i) {
+				out[2 * i] = samples[i];
+				out[2 * i + 1] = samples[i] >> 8;
+			}
+			count += extended_length;
+		}
+		return count;
+	}
+
 	bool produce(int16_t *audio_buffer, int channel_select) final {
 		bool data_symbol = false;
 		switch (count_down) {
@@ -298,6 +324,8 @@ public:
 		count_down = 5;
 		fancy_line = 11 * fancy_header;
 		noise_count = noise_symbols;
+		// noise, correlator, preamble, payload, fancy header and silence
+		frame_symbols = noise_symbols + 2 + (operation_mode ? symbol_count : 0) + fancy_line + 1;
 		for (int i = 0; i < guard_length; ++i)
 			guard[i] = 0;
 		const uint32_t *frozen_bits;
@@ -0,0 +1,53 @@
+/*
+Cheap per-stage counters for profiling the decoder in production
+
+Copyright 2026 rattlegram-desktop authors
+*/
+
+#pragma once
+
+#include <atomic>
+#include <chrono>
+#include <cstdint>
+
+namespace DSP {
+
+// written by the decoding thread only, snapshots may be taken from any thread
+class StageCounter
+{
+	std::atomic<int64_t> count_{0}, total_{0}, max_{0};
+public:
+	void add(int64_t nanos)
+	{
+		count_.store(count_.load(std::memory_order_relaxed) + 1, std::memory_order_relaxed);
+		total_.store(total_.load(std::memory_order_relaxed) + nanos, std::memory_order_relaxed);
+		if (nanos > max_.load(std::memory_order_relaxed))
+			max_.store(nanos, std::memory_order_relaxed);
+	}
+	// count, cumulative and maximum nanoseconds
+	void snapshot(int64_t *values) const
+	{
+		values[0] = count_.load(std::memory_order_relaxed);
+		values[1] = total_.load(std::memory_order_relaxed);
+		values[2] = max_.load(std::memory_order_relaxed);
+	}
+};
+
+class StageTimer
+{
+	StageCounter &counter;
+	int64_t start;
+	static int64_t now()
+	{
+		return std::chrono::duration_cast<std::chrono::nanoseconds>(
+			std::chrono::steady_clock::now().time_since_epoch()).count();
+	}
+public:
+	explicit StageTimer(StageCounter &counter) : counter(counter), start(now()) {}
+	~StageTimer()
+	{
+		counter.add(now() - start);
+	}
+};
+
+}